@@ -0,0 +1,90 @@
+package org.infinispan.interop;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Records/sec loading {@link CryptoCurrency} entries into the 'indexed' cache one <code>put</code> at a time versus
+ * through the {@link BulkLoader}. Each invocation writes {@link #ENTRIES} entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class BulkLoadBenchmark {
+
+   static final int ENTRIES = 10_000;
+
+   /**
+    * The settings of the {@link BulkLoader}, in a state of their own so that the per-key baseline runs only once.
+    */
+   @State(Scope.Benchmark)
+   public static class Batching {
+      @Param({"100", "1000"})
+      int batchSize;
+
+      @Param({"1", "4", "16"})
+      int maxInFlight;
+   }
+
+   private InteropServer server;
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<String, CryptoCurrency> remoteCache;
+   private List<Map.Entry<String, CryptoCurrency>> entries;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      server = InteropServer.start();
+      remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder().marshaller(Scenario.PROTOBUF.marshaller()).build());
+      Scenario.PROTOBUF.prepare(remoteCacheManager);
+      remoteCache = remoteCacheManager.getCache(Scenario.PROTOBUF.cacheName);
+
+      entries = new ArrayList<>(ENTRIES);
+      for (int i = 0; i < ENTRIES; i++) {
+         entries.add(new SimpleImmutableEntry<>("CUR-" + i, new CryptoCurrency("Currency " + i, i)));
+      }
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      remoteCacheManager.stop();
+      server.close();
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(ENTRIES)
+   public void perKeyPut() {
+      for (Map.Entry<String, CryptoCurrency> entry : entries) {
+         remoteCache.put(entry.getKey(), entry.getValue());
+      }
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(ENTRIES)
+   public BulkLoader.Result bulkLoad(Batching batching) throws InterruptedException {
+      return new BulkLoader<>(remoteCache, batching.batchSize, batching.maxInFlight).load(entries.iterator());
+   }
+}
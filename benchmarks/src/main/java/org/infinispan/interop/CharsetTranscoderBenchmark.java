@@ -0,0 +1,73 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Shift_JIS to UTF-8 conversion of multi-megabyte payloads: the whole payload decoded into a String and encoded again,
+ * as the server does for a Shift_JIS body, versus the chunked {@link CharsetTranscoder}. The allocation rate is
+ * reported by the GC profiler, enabled by {@link #main(String[])} or with <code>-prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class CharsetTranscoderBenchmark {
+
+   static final Charset SHIFT_JIS = Charset.forName("Shift_JIS");
+
+   @Param({"1048576", "16777216"})
+   int payloadSize;
+
+   private byte[] payload;
+   private OutputStream sink;
+
+   @Setup
+   public void setup() {
+      StringBuilder text = new StringBuilder(payloadSize);
+      while (text.length() < payloadSize / 2) {
+         text.append("{\"description\": \"現金\",\"rank\": 12222}\n");
+      }
+      payload = text.toString().getBytes(SHIFT_JIS);
+      sink = OutputStream.nullOutputStream();
+   }
+
+   @Benchmark
+   public byte[] wholePayload() {
+      return new String(payload, SHIFT_JIS).getBytes(UTF_8);
+   }
+
+   @Benchmark
+   public long chunked() throws IOException {
+      return CharsetTranscoder.transcode(new ByteArrayInputStream(payload), SHIFT_JIS, sink, UTF_8);
+   }
+
+   public static void main(String[] args) throws Exception {
+      new Runner(new OptionsBuilder()
+            .include(CharsetTranscoderBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+   }
+}
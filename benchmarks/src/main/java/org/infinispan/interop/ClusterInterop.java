@@ -0,0 +1,316 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.http.HttpHeaders.ACCEPT;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ClientIntelligence;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.commons.marshall.UTF8StringMarshaller;
+import org.infinispan.interop.Utils.Endpoint;
+
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * Runs the demo scenarios against an {@link InteropCluster}, and measures how the Hot Rod latency depends on the routing
+ * of the client and on nodes joining and leaving:
+ * <ul>
+ * <li>interop: entries of every {@link Scenario} written from each endpoint, through each node, and read from every
+ * endpoint of every node,</li>
+ * <li>routing: get and put latency in the 'string-cache' with each {@link ClientIntelligence}. Only
+ * <code>HASH_DISTRIBUTION_AWARE</code> clients send each request to the primary owner of the key, the others balance
+ * requests over all the nodes, and a node that does not own the key forwards the request to one that does,</li>
+ * <li>rebalance: the latency of a constant get/put load, every half second, while a node joins the cluster and leaves
+ * it again, or leaves and joins again when the cluster already has {@link InteropCluster#MAX_NODES} nodes.</li>
+ * </ul>
+ * Every cache keeps two copies of each entry, so with two nodes every node owns every key: use three or four to see the
+ * cost of routing. Arguments are the number of nodes, 3 by default, and the number of entries of about 1 KB in the
+ * 'string-cache' while it is rebalanced, 100000 by default.
+ */
+public class ClusterInterop {
+
+   // Ids with the same number of digits, so that the text of one is never part of the text of another
+   static final int FIRST_ID = 1000;
+   static final int KEYS = 60;
+
+   static final int ROUTING_WARMUP = 5_000;
+   static final int ROUTING_OPERATIONS = 20_000;
+
+   static final int LOAD_THREADS = 8;
+   static final int PUT_PERCENT = 20;
+   static final long SAMPLE_MILLIS = 500;
+   static final long PHASE_MILLIS = 5_000;
+   static final String FILLER = "x".repeat(1000);
+
+   static final String ROUTING_HEADER = String.format("%-25s %10s %12s %12s %12s %12s", "intelligence", "ops/s",
+         "get p50 us", "get p99 us", "put p50 us", "put p99 us");
+   static final String TIMELINE_HEADER = String.format("%8s %-8s %10s %12s %12s %12s %8s", "time s", "phase", "ops/s",
+         "p50 us", "p99 us", "max us", "errors");
+   static final String PHASE_HEADER = String.format("%-8s %8s %10s %12s %12s %12s %12s %8s", "phase", "seconds", "ops/s",
+         "p50 us", "p99 us", "p99.9 us", "max us", "errors");
+
+   public static void main(String[] args) throws Exception {
+      int size = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+      int entries = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+      try (InteropCluster cluster = InteropCluster.start(size)) {
+         System.out.printf("%d nodes, Hot Rod on %s%n%n", size, cluster.hotRodServers());
+         for (Scenario scenario : Scenario.values()) {
+            interop(cluster, scenario);
+         }
+
+         System.out.printf("%nRouting, %,d operations each%n%s%n", ROUTING_OPERATIONS, ROUTING_HEADER);
+         for (ClientIntelligence intelligence : ClientIntelligence.values()) {
+            routing(cluster, intelligence);
+         }
+
+         System.out.printf("%nRebalance of %,d entries, %d threads, %d%% puts%n", entries, LOAD_THREADS, PUT_PERCENT);
+         rebalance(cluster, entries);
+      }
+      System.exit(0);
+   }
+
+   /**
+    * Writes {@link #KEYS} entries, each one from the next endpoint and node, and reads every entry from Hot Rod and from
+    * the REST and memcached endpoints of every node.
+    */
+   private static void interop(InteropCluster cluster, Scenario scenario) throws Exception {
+      List<Integer> nodes = cluster.nodes();
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder()
+            .addServers(cluster.hotRodServers()).marshaller(scenario.marshaller()).build());
+      List<MemcachedClient> memcachedClients = new ArrayList<>();
+      try {
+         scenario.prepare(remoteCacheManager);
+         RemoteCache<String, Object> cache = remoteCacheManager.getCache(scenario.cacheName);
+         Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
+         for (int node : nodes) {
+            memcachedClients.add(new MemcachedClient(InteropCluster.memcachedAddress(node, scenario.memcachedPort)));
+         }
+
+         for (int id = FIRST_ID; id < FIRST_ID + KEYS; id++) {
+            String key = "CLUSTER-" + id;
+            int i = (id / Endpoint.values().length) % nodes.size();
+            switch (Endpoint.values()[id % Endpoint.values().length]) {
+               case HOT_ROD:
+                  cache.put(key, scenario.value(id));
+                  break;
+               case REST:
+                  requestExecutor.execute(Request.Post(InteropCluster.restUrl(nodes.get(i), scenario.cacheName) + key)
+                        .bodyString(scenario.text(id), scenario.contentType)).discardContent();
+                  break;
+               default:
+                  memcachedClients.get(i).set(key, 0, scenario.text(id), JsonTranscoder.text()).get();
+            }
+         }
+
+         int reads = 0;
+         for (int id = FIRST_ID; id < FIRST_ID + KEYS; id++) {
+            String key = "CLUSTER-" + id;
+            verify(scenario, key, Endpoint.HOT_ROD, -1, scenario.value(id).equals(cache.get(key)));
+            for (int i = 0; i < nodes.size(); i++) {
+               String fromRest = requestExecutor.execute(Request.Get(InteropCluster.restUrl(nodes.get(i), scenario.cacheName) + key)
+                     .addHeader(ACCEPT, scenario.contentType.getMimeType())).returnContent().asString(UTF_8);
+               verify(scenario, key, Endpoint.REST, nodes.get(i), fromRest.contains("Currency " + id));
+               String fromMemcached = memcachedClients.get(i).get(key, JsonTranscoder.text());
+               verify(scenario, key, Endpoint.MEMCACHED, nodes.get(i), fromMemcached != null && fromMemcached.contains("Currency " + id));
+            }
+            reads += 1 + 2 * nodes.size();
+         }
+         System.out.printf("%-10s %d entries written from every endpoint and node, %,d reads returned them%n", scenario, KEYS, reads);
+      } finally {
+         memcachedClients.forEach(MemcachedClient::shutdown);
+         remoteCacheManager.stop();
+      }
+   }
+
+   private static void verify(Scenario scenario, String key, Endpoint endpoint, int node, boolean same) {
+      if (!same) {
+         throw new IllegalStateException(String.format("%s: %s read from %s%s is not the value written", scenario, key,
+               endpoint, node < 0 ? "" : " on node " + node));
+      }
+   }
+
+   private static void routing(InteropCluster cluster, ClientIntelligence intelligence) {
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder()
+            .addServers(cluster.hotRodServers()).clientIntelligence(intelligence).marshaller(new UTF8StringMarshaller()).build());
+      try {
+         RemoteCache<String, String> cache = remoteCacheManager.getCache("string-cache");
+         String[] keys = new String[InteropBenchmark.KEY_SPACE];
+         for (int i = 0; i < keys.length; i++) {
+            keys[i] = "ROUTING-" + i;
+            cache.put(keys[i], "Currency " + i);
+         }
+         Histogram gets = new Histogram(3);
+         Histogram puts = new Histogram(3);
+         for (int i = 0; i < ROUTING_WARMUP; i++) {
+            cache.get(keys[i % keys.length]);
+         }
+
+         long start = System.nanoTime();
+         for (int i = 0; i < ROUTING_OPERATIONS; i++) {
+            String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+            long begin = System.nanoTime();
+            if (i % 2 == 0) {
+               cache.get(key);
+               gets.recordValue(System.nanoTime() - begin);
+            } else {
+               cache.put(key, "Currency " + i);
+               puts.recordValue(System.nanoTime() - begin);
+            }
+         }
+         double seconds = (System.nanoTime() - start) / 1e9;
+
+         System.out.printf("%-25s %,10.0f %,12.1f %,12.1f %,12.1f %,12.1f%n", intelligence, ROUTING_OPERATIONS / seconds,
+               gets.getValueAtPercentile(50) / 1e3, gets.getValueAtPercentile(99) / 1e3,
+               puts.getValueAtPercentile(50) / 1e3, puts.getValueAtPercentile(99) / 1e3);
+      } finally {
+         remoteCacheManager.stop();
+      }
+   }
+
+   private static void rebalance(InteropCluster cluster, int entries) throws InterruptedException {
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder()
+            .addServers(cluster.hotRodServers()).marshaller(new UTF8StringMarshaller()).build());
+      ExecutorService load = Executors.newFixedThreadPool(LOAD_THREADS);
+      ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+      try {
+         RemoteCache<String, String> cache = remoteCacheManager.getCache("string-cache");
+         new BulkLoader<>(cache, 1000, 4).load(IntStream.range(0, entries)
+               .<Map.Entry<String, String>>mapToObj(i -> new SimpleImmutableEntry<>("REBALANCE-" + i, "Currency " + i + ": " + FILLER))
+               .iterator());
+
+         // Failed operations are retried by the client on another server; those that still fail are counted
+         Recorder recorder = new Recorder(3);
+         LongAdder errors = new LongAdder();
+         AtomicBoolean running = new AtomicBoolean(true);
+         for (int t = 0; t < LOAD_THREADS; t++) {
+            load.execute(() -> {
+               ThreadLocalRandom random = ThreadLocalRandom.current();
+               while (running.get()) {
+                  int i = random.nextInt(entries);
+                  long begin = System.nanoTime();
+                  try {
+                     if (random.nextInt(100) < PUT_PERCENT) {
+                        cache.put("REBALANCE-" + i, "Currency " + i + ": " + FILLER);
+                     } else {
+                        cache.get("REBALANCE-" + i);
+                     }
+                     recorder.recordValue(System.nanoTime() - begin);
+                  } catch (RuntimeException e) {
+                     errors.increment();
+                  }
+               }
+            });
+         }
+
+         Timeline timeline = new Timeline(recorder, errors);
+         timeline.phase("steady");
+         System.out.println(TIMELINE_HEADER);
+         sampler.scheduleAtFixedRate(timeline::sample, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+         Thread.sleep(PHASE_MILLIS);
+         if (cluster.size() < InteropCluster.MAX_NODES) {
+            timeline.phase("join");
+            int node = cluster.addNode();
+            timeline.phase("joined");
+            Thread.sleep(PHASE_MILLIS);
+            timeline.phase("leave");
+            cluster.stopNode(node);
+            timeline.phase("left");
+         } else {
+            int node = InteropCluster.MAX_NODES - 1;
+            timeline.phase("leave");
+            cluster.stopNode(node);
+            timeline.phase("left");
+            Thread.sleep(PHASE_MILLIS);
+            timeline.phase("join");
+            cluster.addNode();
+            timeline.phase("joined");
+         }
+         Thread.sleep(PHASE_MILLIS);
+
+         running.set(false);
+         sampler.shutdown();
+         sampler.awaitTermination(1, TimeUnit.MINUTES);
+         timeline.phase(null);
+         System.out.printf("%n%s%n", PHASE_HEADER);
+         timeline.printPhases();
+      } finally {
+         sampler.shutdownNow();
+         load.shutdown();
+         load.awaitTermination(1, TimeUnit.MINUTES);
+         remoteCacheManager.stop();
+      }
+   }
+
+   /**
+    * The latency of each interval, and of each phase, of the rebalance load.
+    */
+   private static final class Timeline {
+      private final Recorder recorder;
+      private final LongAdder errors;
+      private final long start = System.nanoTime();
+      // Written by the sampler, and only read by the main thread once it has stopped
+      private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+      private final Map<String, Long> failures = new LinkedHashMap<>();
+      private final Map<String, Long> durations = new LinkedHashMap<>();
+      private volatile String phase;
+      private long phaseStart;
+
+      Timeline(Recorder recorder, LongAdder errors) {
+         this.recorder = recorder;
+         this.errors = errors;
+      }
+
+      /**
+       * Ends the current phase, if any, and starts the next one, if any.
+       */
+      void phase(String next) {
+         long now = System.nanoTime();
+         if (phase != null) {
+            durations.put(phase, now - phaseStart);
+         }
+         phase = next;
+         phaseStart = now;
+      }
+
+      void sample() {
+         String current = phase;
+         Histogram interval = recorder.getIntervalHistogram();
+         long failed = errors.sumThenReset();
+         latencies.computeIfAbsent(current, p -> new Histogram(3)).add(interval);
+         failures.merge(current, failed, Long::sum);
+         System.out.printf("%8.1f %-8s %,10.0f %,12.1f %,12.1f %,12.1f %,8d%n", (System.nanoTime() - start) / 1e9, current,
+               interval.getTotalCount() * 1000.0 / SAMPLE_MILLIS, interval.getValueAtPercentile(50) / 1e3,
+               interval.getValueAtPercentile(99) / 1e3, interval.getMaxValue() / 1e3, failed);
+      }
+
+      void printPhases() {
+         durations.forEach((name, nanos) -> {
+            Histogram histogram = latencies.getOrDefault(name, new Histogram(3));
+            System.out.printf("%-8s %8.1f %,10.0f %,12.1f %,12.1f %,12.1f %,12.1f %,8d%n", name, nanos / 1e9,
+                  histogram.getTotalCount() / (nanos / 1e9), histogram.getValueAtPercentile(50) / 1e3,
+                  histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                  histogram.getMaxValue() / 1e3, failures.getOrDefault(name, 0L));
+         });
+      }
+   }
+}
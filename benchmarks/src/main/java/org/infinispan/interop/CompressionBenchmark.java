@@ -0,0 +1,103 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * CPU time to compress and decompress the JSON documents of {@link CompressionInterop} with each codec of
+ * {@link Compression}, by document size. {@link #main(String[])} first prints the bytes each codec sends over the wire
+ * for every size, since the time spent compressing is only worth it when it saves more in transfer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+   static final int[] PAYLOAD_SIZES = {256, 1024, 4096, 16384, 65536, 262144};
+
+   @Param({"LZ4", "ZSTD_1", "ZSTD_3"})
+   String codec;
+
+   @Param({"256", "1024", "4096", "16384", "65536", "262144"})
+   int payloadSize;
+
+   private Compression compression;
+   private byte[] payload;
+   private byte[] compressed;
+
+   @Setup
+   public void setup() {
+      compression = compression(codec);
+      payload = payload(payloadSize);
+      compressed = compression.compress(payload);
+   }
+
+   @Benchmark
+   public byte[] compress() {
+      return compression.compress(payload);
+   }
+
+   @Benchmark
+   public byte[] decompress() throws IOException {
+      return Compression.decompress(compressed);
+   }
+
+   static Compression compression(String codec) {
+      // Compress everything, to measure the codec even below the default threshold
+      switch (codec) {
+         case "LZ4":
+            return Compression.lz4(0);
+         case "ZSTD_1":
+            return Compression.zstd(0, 1);
+         case "ZSTD_3":
+            return Compression.zstd(0, 3);
+         default:
+            throw new IllegalArgumentException(codec);
+      }
+   }
+
+   static byte[] payload(int size) {
+      return CompressionInterop.document("Currency", 1, size, size).getBytes(UTF_8);
+   }
+
+   public static void main(String[] args) throws Exception {
+      String[] codecs = {"LZ4", "ZSTD_1", "ZSTD_3"};
+      System.out.printf("%10s", "bytes");
+      for (String codec : codecs) {
+         System.out.printf(" %10s %6s", codec, "ratio");
+      }
+      System.out.println();
+      for (int size : PAYLOAD_SIZES) {
+         byte[] payload = payload(size);
+         System.out.printf("%,10d", payload.length);
+         for (String codec : codecs) {
+            int wire = compression(codec).compress(payload).length;
+            System.out.printf(" %,10d %6.2f", wire, payload.length / (double) wire);
+         }
+         System.out.println();
+      }
+
+      new Runner(new OptionsBuilder()
+            .include(CompressionBenchmark.class.getSimpleName())
+            .build()).run();
+   }
+}
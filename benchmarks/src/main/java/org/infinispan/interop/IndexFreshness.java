@@ -0,0 +1,134 @@
+package org.infinispan.interop;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.HdrHistogram.Histogram;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.Search;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.query.dsl.Query;
+import org.infinispan.query.dsl.QueryFactory;
+
+/**
+ * Measures what each {@link IndexTuning} costs writers and what it costs readers, on the in-process server:
+ * <ul>
+ * <li>ingest: puts/sec loading the {@link IndexTuning#entityName() entities} of the tuning with the {@link BulkLoader}, and the time until a query
+ * counts all of them once the last put has returned,</li>
+ * <li>freshness: the time between a put returning and a query on its rank finding it,</li>
+ * <li>query latency: the queries of {@link ProtobufInterop}, a full-text search on the description and an ordered
+ * projection of the ranks.</li>
+ * </ul>
+ * Arguments are the number of entries (100000 by default) and, optionally, the configurations to measure. Set
+ * <code>-Dinterop.index.refreshMillis</code> to change the flush and reader refresh interval of the asynchronous ones.
+ */
+public class IndexFreshness {
+
+   static final int BATCH_SIZE = 1000;
+   static final int MAX_IN_FLIGHT = 4;
+   static final int FRESHNESS_SAMPLES = 50;
+   static final int QUERIES = 1000;
+   static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+   // Formatted with the entity name of the tuning
+   static final String FULL_TEXT = "FROM %s c WHERE c.description : 'curr*'";
+   static final String RANKS = "SELECT c.rank FROM %s c ORDER BY c.rank";
+   static final String BY_RANK = "FROM %s c WHERE c.rank = :rank";
+
+   static final String HEADER = String.format("%-10s %10s %12s %14s %14s %14s %14s %14s %14s",
+         "tuning", "puts/s", "all visible", "fresh p50 ms", "fresh p99 ms", "search p50 us", "search p99 us", "ranks p50 us", "ranks p99 us");
+
+   public static void main(String[] args) throws Exception {
+      int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+      EnumSet<IndexTuning> tunings = EnumSet.allOf(IndexTuning.class);
+      if (args.length > 1) {
+         tunings.clear();
+         for (int i = 1; i < args.length; i++) {
+            tunings.add(IndexTuning.valueOf(args[i]));
+         }
+      }
+
+      List<String> results = new ArrayList<>();
+      try (InteropServer server = InteropServer.start()) {
+         RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder().marshaller(Scenario.PROTOBUF.marshaller()).build());
+         try {
+            Scenario.PROTOBUF.prepare(remoteCacheManager);
+            for (IndexTuning tuning : tunings) {
+               String result = measure(tuning, remoteCacheManager.getCache(tuning.cacheName), entries);
+               System.out.println(result);
+               results.add(result);
+            }
+         } finally {
+            remoteCacheManager.stop();
+         }
+      }
+
+      System.out.printf("%n%,d entries, refresh every %d ms%n", entries, IndexTuning.REFRESH_MILLIS);
+      System.out.println(HEADER);
+      results.forEach(System.out::println);
+      System.exit(0);
+   }
+
+   private static String measure(IndexTuning tuning, RemoteCache<String, CryptoCurrency> remoteCache, int entries) throws InterruptedException {
+      remoteCache.clear();
+      QueryFactory queryFactory = Search.getQueryFactory(remoteCache);
+      String entityName = tuning.entityName();
+      String byRank = String.format(BY_RANK, entityName);
+
+      BulkLoader.Result loaded = new BulkLoader<>(remoteCache, BATCH_SIZE, MAX_IN_FLIGHT)
+            .load(IntStream.range(0, entries)
+                  .<Map.Entry<String, CryptoCurrency>>mapToObj(i -> new SimpleImmutableEntry<>("CUR-" + i, tuning.newEntity("Currency " + i, i)))
+                  .iterator());
+      long allVisibleNanos = await(() -> queryFactory.create("FROM " + entityName).maxResults(1).getResultSize() >= entries);
+
+      // Ranks below 0 are only used by these entries, so each query finds exactly the entry just written
+      Histogram freshness = new Histogram(TIMEOUT_NANOS, 3);
+      for (int i = 1; i <= FRESHNESS_SAMPLES; i++) {
+         int rank = -i;
+         remoteCache.put("FRESH-" + i, tuning.newEntity("Fresh " + i, rank));
+         freshness.recordValue(await(() -> !queryFactory.create(byRank).setParameter("rank", rank).list().isEmpty()));
+      }
+
+      String fullText = String.format(FULL_TEXT, entityName);
+      String rankProjection = String.format(RANKS, entityName);
+      Histogram search = latencies(() -> queryFactory.create(fullText).maxResults(10));
+      Histogram ranks = latencies(() -> queryFactory.create(rankProjection).maxResults(100));
+
+      return String.format("%-10s %,10.0f %,9d ms %,14.1f %,14.1f %,14.1f %,14.1f %,14.1f %,14.1f",
+            tuning, loaded.getRecordsPerSecond(), TimeUnit.NANOSECONDS.toMillis(allVisibleNanos),
+            freshness.getValueAtPercentile(50) / 1e6, freshness.getValueAtPercentile(99) / 1e6,
+            search.getValueAtPercentile(50) / 1e3, search.getValueAtPercentile(99) / 1e3,
+            ranks.getValueAtPercentile(50) / 1e3, ranks.getValueAtPercentile(99) / 1e3);
+   }
+
+   /**
+    * Polls the condition until it holds, returning how long it took.
+    */
+   private static long await(Supplier<Boolean> condition) throws InterruptedException {
+      long start = System.nanoTime();
+      while (!condition.get()) {
+         if (System.nanoTime() - start > TIMEOUT_NANOS) {
+            throw new IllegalStateException("Writes not visible to queries after " + TimeUnit.NANOSECONDS.toSeconds(TIMEOUT_NANOS) + " seconds");
+         }
+         Thread.sleep(1);
+      }
+      return System.nanoTime() - start;
+   }
+
+   private static Histogram latencies(Supplier<Query> query) {
+      Histogram latencies = new Histogram(TIMEOUT_NANOS, 3);
+      for (int i = 0; i < QUERIES; i++) {
+         long start = System.nanoTime();
+         query.get().list();
+         latencies.recordValue(System.nanoTime() - start);
+      }
+      return latencies;
+   }
+}
@@ -0,0 +1,118 @@
+package org.infinispan.interop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.configuration.cache.Index;
+import org.infinispan.configuration.cache.IndexingConfigurationBuilder;
+
+/**
+ * The indexing configurations of the 'indexed' cache and its variants in <code>client/config/clustered.xml</code>,
+ * trading how soon a write is visible to queries for ingest throughput.
+ * <p>
+ * The auto-configuration of a distributed cache stores the index in Infinispan caches, shared by the nodes. The
+ * variants index locally, to the heap or to a filesystem directory of their own, with a near-real-time index manager
+ * that serves queries from the writer without committing to the directory. They store {@link SearchOnlyCryptoCurrency}
+ * entries, whose description is not stored in the index. Synchronous indexing updates the index before the write
+ * returns. Asynchronous indexing queues the update, flushing the queue every {@link #REFRESH_MILLIS}, and queries use a
+ * reader refreshed at the same interval instead of checking for changes on every query.
+ */
+enum IndexTuning {
+
+   /**
+    * 'indexed': the auto-configuration, synchronous indexing to the Infinispan directory.
+    */
+   AUTO("indexed", false, false),
+
+   /**
+    * Synchronous indexing to a heap directory.
+    */
+   RAM("indexed-ram", true, false),
+
+   /**
+    * Asynchronous indexing to a filesystem directory.
+    */
+   ASYNC("indexed-async", false, true),
+
+   /**
+    * Asynchronous indexing to a heap directory.
+    */
+   RAM_ASYNC("indexed-ram-async", true, true);
+
+   static final long REFRESH_MILLIS = Long.getLong("interop.index.refreshMillis", 1000);
+
+   private static final String PREFIX = "hibernate.search.default.";
+
+   /**
+    * The directory of a filesystem index.
+    */
+   static final String INDEX_BASE = PREFIX + "indexBase";
+
+   final String cacheName;
+   private final boolean ram;
+   private final boolean async;
+
+   IndexTuning(String cacheName, boolean ram, boolean async) {
+      this.cacheName = cacheName;
+      this.ram = ram;
+      this.async = async;
+   }
+
+   /**
+    * The message stored and queried in the caches of this tuning.
+    */
+   String entityName() {
+      return this == AUTO ? "CryptoCurrency" : "SearchOnlyCryptoCurrency";
+   }
+
+   CryptoCurrency newEntity(String description, int rank) {
+      return this == AUTO ? new CryptoCurrency(description, rank) : new SearchOnlyCryptoCurrency(description, rank);
+   }
+
+   /**
+    * Whether the index is written to a filesystem directory, whose {@link #INDEX_BASE} must differ for each cache and
+    * each node of the same JVM.
+    */
+   boolean isFilesystem() {
+      return this != AUTO && !ram;
+   }
+
+   /**
+    * Stores the index of an auto-configured cache in Infinispan caches of its own, returning their names. Otherwise
+    * the Infinispan directory keeps the indexes of all the caches in the same caches, by index name, and the caches
+    * indexing the same entity share their index.
+    */
+   static List<String> ownDirectory(IndexingConfigurationBuilder indexing, String cacheName) {
+      List<String> directoryCaches = new ArrayList<>();
+      for (String kind : new String[]{"locking", "metadata", "data"}) {
+         String directoryCache = cacheName + "-lucene-" + kind;
+         indexing.addProperty(PREFIX + kind + "_cachename", directoryCache);
+         directoryCaches.add(directoryCache);
+      }
+      return directoryCaches;
+   }
+
+   /**
+    * Configures the indexing of a cache, except the {@link #INDEX_BASE} of the filesystem indexes.
+    */
+   void configure(IndexingConfigurationBuilder indexing) {
+      indexing.index(Index.LOCAL);
+      if (this == AUTO) {
+         indexing.autoConfig(true);
+         return;
+      }
+      indexing.addProperty(PREFIX + "indexmanager", "near-real-time")
+            .addProperty(PREFIX + "exclusive_index_use", "true");
+      if (ram) {
+         indexing.addProperty(PREFIX + "directory_provider", "local-heap");
+      } else {
+         indexing.addProperty(PREFIX + "directory_provider", "filesystem");
+      }
+      if (async) {
+         indexing.addProperty(PREFIX + "worker.execution", "async")
+               .addProperty(PREFIX + "index_flush_interval", String.valueOf(REFRESH_MILLIS))
+               .addProperty(PREFIX + "reader.strategy", "async")
+               .addProperty(PREFIX + "reader.async_refresh_period_ms", String.valueOf(REFRESH_MILLIS));
+      }
+   }
+}
@@ -0,0 +1,127 @@
+package org.infinispan.interop;
+
+import static org.apache.http.HttpHeaders.ACCEPT;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.interop.Utils.Endpoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * Put/get throughput and latency percentiles of every storage mode, accessed from every endpoint.
+ * <p>
+ * Entries are pre-loaded from Hot Rod, so reads from REST and memcached pay the transcoding from the cache's
+ * <code>&lt;encoding&gt;</code> to the endpoint format. Run with:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar InteropBenchmark -p scenario=PROTOBUF -p endpoint=REST
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class InteropBenchmark {
+
+   static final int KEY_SPACE = 1024;
+
+   @Param({"STRING", "JSON", "OBJECT", "MARSHALLED", "PROTOBUF"})
+   Scenario scenario;
+
+   @Param({"HOT_ROD", "REST", "MEMCACHED"})
+   String endpoint;
+
+   private InteropServer server;
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<String, Object> remoteCache;
+   private Executor requestExecutor;
+   private MemcachedClient memcachedClient;
+
+   private Endpoint target;
+   private String[] keys;
+   private String[] urls;
+   private Object[] values;
+   private String[] texts;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      server = InteropServer.start();
+      remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder().marshaller(scenario.marshaller()).build());
+      scenario.prepare(remoteCacheManager);
+      remoteCache = remoteCacheManager.getCache(scenario.cacheName);
+      requestExecutor = Executor.newInstance().auth("dev", "dev");
+      memcachedClient = new MemcachedClient(new InetSocketAddress(InteropServer.HOST, scenario.memcachedPort));
+      target = Endpoint.valueOf(endpoint);
+
+      keys = new String[KEY_SPACE];
+      urls = new String[KEY_SPACE];
+      values = new Object[KEY_SPACE];
+      texts = new String[KEY_SPACE];
+      for (int i = 0; i < KEY_SPACE; i++) {
+         keys[i] = "KEY-" + i;
+         urls[i] = String.format("http://%s:%d/rest/%s/%s", InteropServer.HOST, InteropServer.REST_PORT, scenario.cacheName, keys[i]);
+         values[i] = scenario.value(i);
+         texts[i] = scenario.text(i);
+         remoteCache.put(keys[i], values[i]);
+      }
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      memcachedClient.shutdown();
+      remoteCacheManager.stop();
+      server.close();
+   }
+
+   @Benchmark
+   public Object put() throws Exception {
+      int i = ThreadLocalRandom.current().nextInt(KEY_SPACE);
+      switch (target) {
+         case HOT_ROD:
+            return remoteCache.put(keys[i], values[i]);
+         case REST:
+            return requestExecutor.execute(Request.Post(urls[i]).bodyString(texts[i], scenario.contentType))
+                  .returnResponse().getStatusLine();
+         default:
+            return memcachedClient.set(keys[i], 0, texts[i]).get();
+      }
+   }
+
+   @Benchmark
+   public Object get() throws Exception {
+      int i = ThreadLocalRandom.current().nextInt(KEY_SPACE);
+      switch (target) {
+         case HOT_ROD:
+            return remoteCache.get(keys[i]);
+         case REST:
+            return requestExecutor.execute(Request.Get(urls[i]).addHeader(ACCEPT, scenario.contentType.getMimeType()))
+                  .returnContent().asBytes();
+         default:
+            return memcachedClient.get(keys[i]);
+      }
+   }
+}
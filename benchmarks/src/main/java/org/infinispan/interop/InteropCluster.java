@@ -0,0 +1,180 @@
+package org.infinispan.interop;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.commons.CacheException;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.manager.DefaultCacheManager;
+
+/**
+ * Up to {@link #MAX_NODES} {@link InteropServer} nodes in the current JVM, forming the cluster of
+ * <code>client/config/clustered.xml</code> on the loopback interface, with the Hot Rod, REST and memcached endpoints of
+ * node <code>n</code> on the ports of the Docker image plus <code>100 * n</code>.
+ * <p>
+ * The nodes find each other with the <code>interop-jgroups.xml</code> stack, which is the default TCP stack with
+ * TCPPING instead of multicast discovery, so no network is needed. Every cache of the server is started on every node,
+ * and the cluster only returns from {@link #start(int)}, {@link #addNode()} and {@link #stopNode(int)} once all of them
+ * have been rebalanced over the running nodes.
+ */
+public final class InteropCluster implements AutoCloseable {
+
+   static final int MAX_NODES = 4;
+   static final String JGROUPS_CONFIGURATION = "interop-jgroups.xml";
+   static final long REBALANCE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+   private final InteropServer[] nodes = new InteropServer[MAX_NODES];
+
+   private InteropCluster() {
+   }
+
+   public static InteropCluster start(int size) {
+      if (size < 1 || size > MAX_NODES) {
+         throw new IllegalArgumentException("Between 1 and " + MAX_NODES + " nodes, not " + size);
+      }
+      InteropCluster cluster = new InteropCluster();
+      for (int i = 0; i < size; i++) {
+         cluster.startNode(i);
+      }
+      cluster.awaitRebalance();
+      return cluster;
+   }
+
+   /**
+    * Starts a node in the first free slot and waits for the caches to be rebalanced to include it.
+    *
+    * @return the index of the new node
+    */
+   public int addNode() {
+      for (int i = 0; i < MAX_NODES; i++) {
+         if (nodes[i] == null) {
+            startNode(i);
+            awaitRebalance();
+            return i;
+         }
+      }
+      throw new IllegalStateException("The cluster already has " + MAX_NODES + " nodes");
+   }
+
+   /**
+    * Stops a node, which leaves the cluster gracefully, and waits for the caches to be rebalanced without it.
+    */
+   public void stopNode(int node) {
+      nodes[node].close();
+      nodes[node] = null;
+      awaitRebalance();
+   }
+
+   public int size() {
+      return running().size();
+   }
+
+   /**
+    * The indexes of the running nodes.
+    */
+   public List<Integer> nodes() {
+      List<Integer> indexes = new ArrayList<>();
+      for (int i = 0; i < MAX_NODES; i++) {
+         if (nodes[i] != null) {
+            indexes.add(i);
+         }
+      }
+      return indexes;
+   }
+
+   /**
+    * The Hot Rod endpoints of the running nodes, in the format of <code>ConfigurationBuilder.addServers</code>.
+    */
+   public String hotRodServers() {
+      StringJoiner servers = new StringJoiner(";");
+      for (int node : nodes()) {
+         servers.add(InteropServer.HOST + ":" + InteropServer.port(InteropServer.HOT_ROD_PORT, node));
+      }
+      return servers.toString();
+   }
+
+   /**
+    * The REST URL of <code>cacheName</code> on a node, ending with a slash.
+    */
+   static String restUrl(int node, String cacheName) {
+      return String.format("http://%s:%d/rest/%s/", InteropServer.HOST, InteropServer.port(InteropServer.REST_PORT, node), cacheName);
+   }
+
+   /**
+    * The address of the memcached endpoint of a node listening on <code>port</code> in the first node.
+    */
+   static InetSocketAddress memcachedAddress(int node, int port) {
+      return new InetSocketAddress(InteropServer.HOST, InteropServer.port(port, node));
+   }
+
+   private void startNode(int node) {
+      InteropServer server = InteropServer.start(node, JGROUPS_CONFIGURATION);
+      // Caches are otherwise started by the first request for them, and only own entries on the nodes that received one
+      server.getCacheManager().startCaches(server.getCacheNames().toArray(new String[0]));
+      nodes[node] = server;
+   }
+
+   private List<InteropServer> running() {
+      List<InteropServer> running = new ArrayList<>();
+      for (InteropServer server : nodes) {
+         if (server != null) {
+            running.add(server);
+         }
+      }
+      return running;
+   }
+
+   /**
+    * Waits until every node sees all the running nodes as members of every cache, with no rebalance in progress.
+    */
+   private void awaitRebalance() {
+      List<InteropServer> running = running();
+      long deadline = System.nanoTime() + REBALANCE_TIMEOUT_NANOS;
+      for (InteropServer server : running) {
+         DefaultCacheManager cacheManager = server.getCacheManager();
+         for (String cacheName : server.getCacheNames()) {
+            Cache<?, ?> cache = cacheManager.getCache(cacheName);
+            DistributionManager distributionManager = cache.getAdvancedCache().getDistributionManager();
+            while (cacheManager.getMembers().size() != running.size()
+                  || distributionManager.getCacheTopology().getCurrentCH().getMembers().size() != running.size()
+                  || distributionManager.isRehashInProgress()) {
+               if (System.nanoTime() > deadline) {
+                  throw new CacheException("Cache " + cacheName + " not rebalanced over " + running.size() + " nodes: "
+                        + distributionManager.getCacheTopology());
+               }
+               try {
+                  Thread.sleep(50);
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  throw new CacheException(e);
+               }
+            }
+         }
+      }
+   }
+
+   @Override
+   public void close() {
+      // The last nodes first, so the coordinator only leaves at the end
+      for (int i = MAX_NODES - 1; i >= 0; i--) {
+         if (nodes[i] != null) {
+            nodes[i].close();
+            nodes[i] = null;
+         }
+      }
+   }
+
+   /**
+    * Starts a cluster of the given number of nodes, 3 by default, to run the demos against.
+    */
+   public static void main(String[] args) throws InterruptedException {
+      InteropCluster cluster = InteropCluster.start(args.length > 0 ? Integer.parseInt(args[0]) : 3);
+      Runtime.getRuntime().addShutdownHook(new Thread(cluster::close));
+      System.out.println("Interop cluster started, Hot Rod on " + cluster.hotRodServers());
+      Thread.currentThread().join();
+   }
+}
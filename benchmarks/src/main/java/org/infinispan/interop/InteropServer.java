@@ -0,0 +1,240 @@
+package org.infinispan.interop;
+
+import static org.infinispan.commons.dataconversion.MediaType.APPLICATION_JBOSS_MARSHALLING_TYPE;
+import static org.infinispan.commons.dataconversion.MediaType.APPLICATION_JSON;
+import static org.infinispan.commons.dataconversion.MediaType.APPLICATION_JSON_TYPE;
+import static org.infinispan.commons.dataconversion.MediaType.APPLICATION_OBJECT_TYPE;
+import static org.infinispan.commons.dataconversion.MediaType.TEXT_PLAIN_TYPE;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.commons.dataconversion.MediaType;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.cache.StorageType;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.eviction.EvictionType;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.rest.RestServer;
+import org.infinispan.rest.configuration.RestServerConfigurationBuilder;
+import org.infinispan.server.hotrod.HotRodServer;
+import org.infinispan.server.hotrod.configuration.HotRodServerConfigurationBuilder;
+import org.infinispan.server.memcached.MemcachedServer;
+import org.infinispan.server.memcached.configuration.MemcachedServerConfigurationBuilder;
+
+/**
+ * Runs the caches and endpoints declared in <code>client/config/clustered.xml</code> inside the current JVM, on the same
+ * ports as the Docker image, so the demos and benchmarks can run without a container.
+ * <p>
+ * The {@link InteropCluster} starts several of them in the same JVM, each node listening on the ports of the first one
+ * shifted by {@link #PORT_OFFSET} times its index.
+ */
+public final class InteropServer implements AutoCloseable {
+
+   static final String HOST = "localhost";
+   static final int HOT_ROD_PORT = 11222;
+   static final int REST_PORT = 8080;
+   static final int PORT_OFFSET = 100;
+   static final String JGROUPS_CONFIGURATION = "default-configs/default-jgroups-tcp.xml";
+
+   // Bound of the '-binary' and '-off-heap' variants of each cache, as in clustered.xml
+   static final long MEMORY_VARIANT_SIZE = Long.getLong("interop.memory.maxBytes", 1L << 30);
+
+   // Expiration and bound of the 'price-ticks' cache, as in clustered.xml
+   static final String PRICE_TICKS = "price-ticks";
+   static final long PRICE_TICKS_LIFESPAN_MILLIS = 10_000;
+   static final long PRICE_TICKS_MAX_ENTRIES = Long.getLong("interop.priceTicks.maxEntries", 100_000);
+
+   private final int node;
+   private final DefaultCacheManager cacheManager;
+   private final TranscodingCache transcodingCache;
+   private final HotRodServer hotRodServer = new HotRodServer();
+   private final RestServer restServer = new RestServer();
+   private final List<MemcachedServer> memcachedServers = new ArrayList<>();
+   private final List<String> cacheNames = new ArrayList<>();
+
+   private InteropServer(int node, String jgroupsConfiguration) {
+      this.node = node;
+      GlobalConfigurationBuilder global = GlobalConfigurationBuilder.defaultClusteredBuilder();
+      global.defaultCacheName("default");
+      global.globalJmxStatistics().allowDuplicateDomains(true);
+      global.transport().clusterName("clustered").nodeName("node-" + node).addProperty("configurationFile", jgroupsConfiguration);
+      // The default cache is defined with the manager: defining it once the manager has started fails with ISPN000432
+      cacheManager = new DefaultCacheManager(global.build(), distributed().build());
+
+      // Same as starting the server with -Dinfinispan.deserialization.whitelist.classes=org.infinispan.interop.CryptoCurrency
+      cacheManager.getClassWhiteList().addClasses(CryptoCurrency.class);
+
+      // Opt-in: conversions of stored values to other formats are kept until the value is written again
+      long transcodingCacheSize = Long.getLong("interop.transcodingCache.maxEntries", 0);
+      transcodingCache = transcodingCacheSize > 0 ? TranscodingCache.install(cacheManager, transcodingCacheSize) : null;
+
+      defineConfiguration("string-cache", encoded(TEXT_PLAIN_TYPE));
+      defineConfiguration("marshalled-pojo-cache", encoded(APPLICATION_JBOSS_MARSHALLING_TYPE));
+      defineConfiguration("pojo-cache", encoded(APPLICATION_OBJECT_TYPE));
+      defineConfiguration("json-cache", encoded(APPLICATION_JSON_TYPE));
+
+      // Price ticks are only valid for seconds: entries written without a lifespan get the one of the cache, and the
+      // reaper removes expired entries every second, unless the interval is 0 and the TickSimulator runs it itself
+      long reaperInterval = Long.getLong("interop.expiration.reaperIntervalMillis", 1000);
+      ConfigurationBuilder priceTicks = encoded(APPLICATION_OBJECT_TYPE);
+      priceTicks.expiration().lifespan(PRICE_TICKS_LIFESPAN_MILLIS).reaperEnabled(reaperInterval > 0).wakeUpInterval(reaperInterval);
+      priceTicks.memory().size(PRICE_TICKS_MAX_ENTRIES);
+      cacheManager.defineConfiguration(PRICE_TICKS, priceTicks.build());
+      cacheNames.add(PRICE_TICKS);
+
+      ConfigurationBuilder indexed = distributed();
+      IndexTuning.AUTO.configure(indexed.indexing());
+      defineConfiguration(IndexTuning.AUTO.cacheName, indexed);
+
+      // Alternative indexing configurations, compared by IndexFreshness
+      for (IndexTuning tuning : IndexTuning.values()) {
+         if (tuning != IndexTuning.AUTO) {
+            ConfigurationBuilder builder = distributed();
+            tuning.configure(builder.indexing());
+            if (tuning.isFilesystem()) {
+               builder.indexing().addProperty(IndexTuning.INDEX_BASE, indexBase(tuning.cacheName));
+            }
+            cacheManager.defineConfiguration(tuning.cacheName, builder.build());
+            cacheNames.add(tuning.cacheName);
+         }
+      }
+   }
+
+   public static InteropServer start() {
+      return start(0, JGROUPS_CONFIGURATION);
+   }
+
+   /**
+    * Starts the given node of a cluster, on the ports of the first node plus {@link #PORT_OFFSET} times its index.
+    */
+   static InteropServer start(int node, String jgroupsConfiguration) {
+      InteropServer server = new InteropServer(node, jgroupsConfiguration);
+
+      server.hotRodServer.start(new HotRodServerConfigurationBuilder().host(HOST).port(port(HOT_ROD_PORT, node)).build(), server.cacheManager);
+      server.restServer.start(new RestServerConfigurationBuilder().host(HOST).port(port(REST_PORT, node)).build(), server.cacheManager);
+
+      server.startMemcached("memcached", 11211, "string-cache", null);
+      server.startMemcached("memcached-2", 11212, "marshalled-pojo-cache", APPLICATION_JSON);
+      server.startMemcached("memcached-3", 11213, "pojo-cache", APPLICATION_JSON);
+      server.startMemcached("memcached-4", 11214, "indexed", APPLICATION_JSON);
+      server.startMemcached("memcached-5", 11215, "json-cache", null);
+      server.startMemcached("memcached-6", 11216, PRICE_TICKS, APPLICATION_JSON);
+      return server;
+   }
+
+   /**
+    * The port on which <code>node</code> listens for the endpoint listening on <code>port</code> in the first node.
+    */
+   static int port(int port, int node) {
+      return port + node * PORT_OFFSET;
+   }
+
+   public DefaultCacheManager getCacheManager() {
+      return cacheManager;
+   }
+
+   /**
+    * The caches defined by the server, besides the default one.
+    */
+   List<String> getCacheNames() {
+      return cacheNames;
+   }
+
+   /**
+    * The cache of converted values, or null when it is disabled.
+    */
+   TranscodingCache getTranscodingCache() {
+      return transcodingCache;
+   }
+
+   /**
+    * The name of the variant of <code>cacheName</code> storing its entries with <code>storageType</code>.
+    */
+   static String cacheName(String cacheName, StorageType storageType) {
+      switch (storageType) {
+         case BINARY:
+            return cacheName + "-binary";
+         case OFF_HEAP:
+            return cacheName + "-off-heap";
+         default:
+            return cacheName;
+      }
+   }
+
+   /**
+    * Defines the cache with the default object storage, and its binary and off-heap variants evicting entries once they
+    * take {@link #MEMORY_VARIANT_SIZE} bytes.
+    */
+   private void defineConfiguration(String cacheName, ConfigurationBuilder builder) {
+      Configuration configuration = builder.build();
+      cacheManager.defineConfiguration(cacheName, configuration);
+      cacheNames.add(cacheName);
+      for (StorageType storageType : new StorageType[]{StorageType.BINARY, StorageType.OFF_HEAP}) {
+         String variant = cacheName(cacheName, storageType);
+         builder.memory().storageType(storageType).evictionType(EvictionType.MEMORY).size(MEMORY_VARIANT_SIZE);
+         if (configuration.indexing().index().isEnabled()) {
+            // The variants store the same entity as the cache, so they need a directory of their own
+            for (String directoryCache : IndexTuning.ownDirectory(builder.indexing(), variant)) {
+               cacheManager.defineConfiguration(directoryCache, replicated().build());
+            }
+         }
+         cacheManager.defineConfiguration(variant, builder.build());
+         cacheNames.add(variant);
+      }
+   }
+
+   /**
+    * The directory of the filesystem index of <code>cacheName</code>, separate for each node of the same JVM.
+    */
+   private String indexBase(String cacheName) {
+      return node == 0 ? cacheName : "node-" + node + "/" + cacheName;
+   }
+
+   private void startMemcached(String name, int port, String cacheName, MediaType clientEncoding) {
+      MemcachedServerConfigurationBuilder builder = new MemcachedServerConfigurationBuilder()
+            .name(name).host(HOST).port(port(port, node)).defaultCacheName(cacheName);
+      if (clientEncoding != null) {
+         builder.clientEncoding(clientEncoding);
+      }
+      MemcachedServer memcachedServer = new MemcachedServer();
+      memcachedServer.start(builder.build(), cacheManager);
+      memcachedServers.add(memcachedServer);
+   }
+
+   private static ConfigurationBuilder distributed() {
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.clustering().cacheMode(CacheMode.DIST_SYNC);
+      return builder;
+   }
+
+   private static ConfigurationBuilder replicated() {
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.clustering().cacheMode(CacheMode.REPL_SYNC);
+      return builder;
+   }
+
+   private static ConfigurationBuilder encoded(String mediaType) {
+      ConfigurationBuilder builder = distributed();
+      builder.encoding().key().mediaType(mediaType);
+      builder.encoding().value().mediaType(mediaType);
+      return builder;
+   }
+
+   @Override
+   public void close() {
+      memcachedServers.forEach(MemcachedServer::stop);
+      restServer.stop();
+      hotRodServer.stop();
+      cacheManager.stop();
+   }
+
+   public static void main(String[] args) throws InterruptedException {
+      InteropServer server = InteropServer.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+      System.out.println("Interop server started, Hot Rod on " + HOT_ROD_PORT + ", REST on " + REST_PORT + ", memcached on 11211-11216");
+      Thread.currentThread().join();
+   }
+}
@@ -0,0 +1,151 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.infinispan.commons.dataconversion.MediaType.APPLICATION_JBOSS_MARSHALLING;
+import static org.infinispan.commons.dataconversion.MediaType.APPLICATION_JSON;
+import static org.infinispan.commons.dataconversion.MediaType.APPLICATION_OBJECT;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.commons.configuration.ClassWhiteList;
+import org.infinispan.commons.marshall.jboss.GenericJBossMarshaller;
+import org.infinispan.server.core.dataconversion.JBossMarshallingTranscoder;
+import org.infinispan.server.core.dataconversion.JsonTranscoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The conversions the server makes for the Java object caches, with the transcoders of the server: unmarshalling and
+ * marshalling the values of Hot Rod clients, and converting objects and marshalled values from and to the JSON of REST
+ * and memcached clients.
+ * <p>
+ * <code>EXTERNALIZABLE</code> is {@link CryptoCurrency}, with the server only allowing that class to be deserialized.
+ * <code>SERIALIZABLE</code> is the same class before it was {@link java.io.Externalizable}, serialized by reflection
+ * over its fields, with the server allowing every class, as with
+ * <code>-Dinfinispan.deserialization.whitelist.regexps=.*</code>. The allocation rate is reported by the GC profiler,
+ * enabled by {@link #main(String[])} or with <code>-prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-opens=java.base/java.lang=ALL-UNNAMED", "--add-opens=java.base/java.util=ALL-UNNAMED",
+      "--add-opens=java.base/java.util.concurrent=ALL-UNNAMED"})
+public class JavaObjectBenchmark {
+
+   /**
+    * {@link CryptoCurrency} as it was, serialized by reflection.
+    */
+   public static class SerializableCryptoCurrency implements Serializable {
+      public String description;
+      public int rank;
+
+      public SerializableCryptoCurrency() {
+      }
+
+      SerializableCryptoCurrency(String description, int rank) {
+         this.description = description;
+         this.rank = rank;
+      }
+   }
+
+   @Param({"SERIALIZABLE", "EXTERNALIZABLE"})
+   String serialization;
+
+   private GenericJBossMarshaller marshaller;
+   private JsonTranscoder jsonTranscoder;
+   private JBossMarshallingTranscoder marshallingTranscoder;
+
+   private Object object;
+   private byte[] marshalled;
+   private byte[] json;
+
+   @Setup
+   public void setup() throws Exception {
+      ClassWhiteList whiteList = new ClassWhiteList();
+      if ("SERIALIZABLE".equals(serialization)) {
+         whiteList.addRegexps(".*");
+         object = new SerializableCryptoCurrency("Bitcoin", 1);
+      } else {
+         whiteList.addClasses(CryptoCurrency.class);
+         object = new CryptoCurrency("Bitcoin", 1);
+      }
+      marshaller = new GenericJBossMarshaller(getClass().getClassLoader(), whiteList);
+      jsonTranscoder = new JsonTranscoder(getClass().getClassLoader(), whiteList);
+      marshallingTranscoder = new JBossMarshallingTranscoder(jsonTranscoder, marshaller);
+
+      marshalled = marshaller.objectToByteBuffer(object);
+      json = (byte[]) jsonTranscoder.transcode(object, APPLICATION_OBJECT, APPLICATION_JSON);
+      System.out.printf("%n%s: %d bytes marshalled, JSON %s%n", serialization, marshalled.length, new String(json, UTF_8));
+   }
+
+   /**
+    * A Hot Rod write to the 'pojo-cache'.
+    */
+   @Benchmark
+   public Object unmarshall() throws IOException, ClassNotFoundException {
+      return marshaller.objectFromByteBuffer(marshalled);
+   }
+
+   /**
+    * A Hot Rod read from the 'pojo-cache'.
+    */
+   @Benchmark
+   public byte[] marshall() throws IOException, InterruptedException {
+      return marshaller.objectToByteBuffer(object);
+   }
+
+   /**
+    * A REST or memcached read from the 'pojo-cache'.
+    */
+   @Benchmark
+   public Object objectToJson() {
+      return jsonTranscoder.transcode(object, APPLICATION_OBJECT, APPLICATION_JSON);
+   }
+
+   /**
+    * A REST or memcached write to the 'pojo-cache'.
+    */
+   @Benchmark
+   public Object jsonToObject() {
+      return jsonTranscoder.transcode(json, APPLICATION_JSON, APPLICATION_OBJECT);
+   }
+
+   /**
+    * A REST or memcached read from the 'marshalled-pojo-cache'.
+    */
+   @Benchmark
+   public Object marshalledToJson() {
+      return marshallingTranscoder.transcode(marshalled, APPLICATION_JBOSS_MARSHALLING, APPLICATION_JSON);
+   }
+
+   /**
+    * A REST or memcached write to the 'marshalled-pojo-cache'.
+    */
+   @Benchmark
+   public Object jsonToMarshalled() {
+      return marshallingTranscoder.transcode(json, APPLICATION_JSON, APPLICATION_JBOSS_MARSHALLING);
+   }
+
+   public static void main(String[] args) throws Exception {
+      new Runner(new OptionsBuilder()
+            .include(JavaObjectBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+   }
+}
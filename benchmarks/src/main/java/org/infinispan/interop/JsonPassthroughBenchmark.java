@@ -0,0 +1,100 @@
+package org.infinispan.interop;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * Reads of JSON documents from the 'json-cache' decoded into Strings, as {@link JsonInterop} does, versus the raw bytes
+ * of the {@link JsonPassthrough}, from Hot Rod and memcached. The allocation rate is reported by the GC profiler,
+ * enabled by {@link #main(String[])} or with <code>-prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class JsonPassthroughBenchmark {
+
+   static final String KEY = "DOC";
+
+   @Param({"1024", "1048576"})
+   int documentSize;
+
+   private InteropServer server;
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<String, String> strings;
+   private RemoteCache<String, byte[]> bytes;
+   private MemcachedClient memcachedClient;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      server = InteropServer.start();
+      remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder().marshaller(Scenario.JSON.marshaller()).build());
+      strings = remoteCacheManager.getCache(Scenario.JSON.cacheName);
+      bytes = JsonPassthrough.bytes(strings);
+      memcachedClient = new MemcachedClient(new InetSocketAddress(InteropServer.HOST, Scenario.JSON.memcachedPort));
+
+      StringBuilder document = new StringBuilder("{\"description\":\"");
+      while (document.length() < documentSize - 20) {
+         document.append("Currency ");
+      }
+      strings.put(KEY, document.append("\",\"rank\":1}").toString());
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      memcachedClient.shutdown();
+      remoteCacheManager.stop();
+      server.close();
+   }
+
+   @Benchmark
+   public String hotRodString() {
+      return strings.get(KEY);
+   }
+
+   @Benchmark
+   public byte[] hotRodBytes() {
+      return bytes.get(KEY);
+   }
+
+   @Benchmark
+   public Object memcachedString() {
+      return memcachedClient.get(KEY);
+   }
+
+   @Benchmark
+   public byte[] memcachedBytes() {
+      return memcachedClient.get(KEY, JsonPassthrough.TRANSCODER);
+   }
+
+   public static void main(String[] args) throws Exception {
+      new Runner(new OptionsBuilder()
+            .include(JsonPassthroughBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+   }
+}
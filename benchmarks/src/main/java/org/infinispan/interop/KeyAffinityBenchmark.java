@@ -0,0 +1,173 @@
+package org.infinispan.interop;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ClientIntelligence;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.commons.marshall.UTF8StringMarshaller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Batched Hot Rod reads and writes of the 'string-cache' on an {@link InteropCluster}, with three ways of routing them:
+ * <ul>
+ * <li><code>ROUND_ROBIN</code>: a <code>BASIC</code> client sends each batch to the next server, which forwards the
+ * keys it does not own to their owners,</li>
+ * <li><code>HASH_AWARE</code>: a <code>HASH_DISTRIBUTION_AWARE</code> client splits each batch of random keys in one
+ * request per owner, and waits for all of them,</li>
+ * <li><code>KEY_AFFINITY</code>: the same client, with batches of keys owned by the same server, formed with the
+ * {@link KeyAffinity} of the cache, each one a single request to its owner.</li>
+ * </ul>
+ * Batches have the same number of keys in every mode, so the sampled time of <code>putAll</code> and
+ * <code>getAll</code> is the latency of a batch. Each thread writes its own keys: concurrent batches locking the same
+ * keys from different nodes would wait for each other until the lock timeout. <code>bulkLoad</code> writes
+ * {@link #ENTRIES} entries with the {@link BulkLoader}, by owner in <code>KEY_AFFINITY</code> mode, and is measured in
+ * entries per second. The connection pool of the clients is set with the properties of {@link Utils#withRouting}, e.g.
+ * <code>-jvmArgsAppend -Dinterop.hotrod.pool.maxActive=4</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = {"--add-opens=java.base/java.lang=ALL-UNNAMED", "--add-opens=java.base/java.lang.invoke=ALL-UNNAMED",
+      "--add-opens=java.base/java.lang.reflect=ALL-UNNAMED", "--add-opens=java.base/java.util=ALL-UNNAMED",
+      "--add-opens=java.base/java.util.concurrent=ALL-UNNAMED", "--add-opens=java.base/java.text=ALL-UNNAMED",
+      "--add-opens=java.desktop/java.awt.font=ALL-UNNAMED"})
+public class KeyAffinityBenchmark {
+
+   static final int KEY_SPACE = 10_000;
+   static final int ENTRIES = 10_000;
+
+   public enum Routing {ROUND_ROBIN, HASH_AWARE, KEY_AFFINITY}
+
+   @Param({"ROUND_ROBIN", "HASH_AWARE", "KEY_AFFINITY"})
+   Routing routing;
+
+   @Param({"3"})
+   int nodes;
+
+   @Param({"10", "100"})
+   int batchSize;
+
+   private InteropCluster cluster;
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<String, String> remoteCache;
+
+   private Map<String, String> values;
+   // For each thread, the keys of each owner, or all of them in a single group when batches are not formed by owner
+   private String[][][] groups;
+   private List<List<Map.Entry<String, String>>> entries;
+
+   @Setup(Level.Trial)
+   public void setup(BenchmarkParams params) throws Exception {
+      cluster = InteropCluster.start(nodes);
+      ConfigurationBuilder builder = Utils.withRouting(new ConfigurationBuilder()).addServers(cluster.hotRodServers())
+            .clientIntelligence(routing == Routing.ROUND_ROBIN ? ClientIntelligence.BASIC : ClientIntelligence.HASH_DISTRIBUTION_AWARE)
+            .marshaller(new UTF8StringMarshaller());
+      remoteCacheManager = new RemoteCacheManager(builder.build());
+      remoteCache = remoteCacheManager.getCache("string-cache");
+
+      values = new LinkedHashMap<>();
+      for (int i = 0; i < KEY_SPACE; i++) {
+         values.put("KEY-" + i, "Currency " + i);
+      }
+      new BulkLoader<>(remoteCache, 1000, 4).load(values.entrySet().iterator());
+
+      int threads = params.getThreads();
+      KeyAffinity<String> keyAffinity = new KeyAffinity<>(remoteCache);
+      groups = new String[threads][][];
+      entries = new ArrayList<>(threads);
+      for (int t = 0; t < threads; t++) {
+         List<String> keys = new ArrayList<>();
+         for (int i = t; i < KEY_SPACE; i += threads) {
+            keys.add("KEY-" + i);
+         }
+         if (routing == Routing.KEY_AFFINITY) {
+            groups[t] = keyAffinity.group(keys).values().stream().map(group -> group.toArray(new String[0])).toArray(String[][]::new);
+         } else {
+            groups[t] = new String[][]{keys.toArray(new String[0])};
+         }
+         List<Map.Entry<String, String>> threadEntries = new ArrayList<>(ENTRIES);
+         for (int i = 0; i < ENTRIES; i++) {
+            String key = keys.get(ThreadLocalRandom.current().nextInt(keys.size()));
+            threadEntries.add(new SimpleImmutableEntry<>(key, values.get(key)));
+         }
+         entries.add(threadEntries);
+      }
+      System.out.printf("%n%s: %d groups of keys per thread, pool of %s per server%n", routing, groups[0].length,
+            remoteCacheManager.getConfiguration().connectionPool());
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      remoteCacheManager.stop();
+      cluster.close();
+   }
+
+   @Benchmark
+   public Object putAll(ThreadParams thread) {
+      Map<String, String> batch = new HashMap<>(batchSize * 2);
+      for (String key : batch(thread)) {
+         batch.put(key, values.get(key));
+      }
+      remoteCache.putAll(batch);
+      return batch;
+   }
+
+   @Benchmark
+   public Map<String, String> getAll(ThreadParams thread) {
+      return remoteCache.getAll(batch(thread));
+   }
+
+   @Benchmark
+   @BenchmarkMode(Mode.Throughput)
+   @OutputTimeUnit(TimeUnit.SECONDS)
+   @OperationsPerInvocation(ENTRIES)
+   public BulkLoader.Result bulkLoad(ThreadParams thread) throws InterruptedException {
+      return new BulkLoader<>(remoteCache, batchSize, 4, routing == Routing.KEY_AFFINITY)
+            .load(entries.get(thread.getThreadIndex()).iterator());
+   }
+
+   /**
+    * {@link #batchSize} distinct keys of a random group of the thread.
+    */
+   private Set<String> batch(ThreadParams thread) {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      String[][] threadGroups = groups[thread.getThreadIndex()];
+      String[] group = threadGroups[random.nextInt(threadGroups.length)];
+      Set<String> batch = new HashSet<>(batchSize * 2);
+      int start = random.nextInt(group.length);
+      for (int i = 0; i < batchSize && i < group.length; i++) {
+         batch.add(group[(start + i) % group.length]);
+      }
+      return batch;
+   }
+}
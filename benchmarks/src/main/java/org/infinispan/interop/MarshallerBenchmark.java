@@ -0,0 +1,108 @@
+package org.infinispan.interop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.protostream.ProtobufUtil;
+import org.infinispan.protostream.SerializationContext;
+import org.infinispan.protostream.annotations.ProtoSchemaBuilder;
+import org.infinispan.protostream.config.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ops/sec and bytes allocated per operation of the {@link CryptoCurrencyMarshaller} compared with the marshaller
+ * generated by the <code>ProtoSchemaBuilder</code>.
+ * <p>
+ * <code>encode</code> and <code>decode</code> go through <code>ProtobufUtil</code> with either marshaller registered,
+ * <code>encodeToReusedBuffer</code> writes with the hand-written marshaller straight into a reused buffer. The
+ * allocation rate is reported by the GC profiler, enabled by {@link #main(String[])} or with <code>-prof gc</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class MarshallerBenchmark {
+
+   @State(Scope.Thread)
+   public static class Marshalling {
+      @Param({"GENERATED", "HAND_WRITTEN"})
+      String marshaller;
+
+      @Param({"7", "100000"})
+      int rank;
+
+      SerializationContext serializationContext;
+      CryptoCurrency cryptoCurrency;
+      byte[] encoded;
+      ByteArrayOutputStream stream;
+
+      @Setup
+      public void setup() throws IOException {
+         serializationContext = ProtobufUtil.newSerializationContext(Configuration.builder().build());
+         new ProtoSchemaBuilder().fileName("crypto.proto").addClass(CryptoCurrency.class).build(serializationContext);
+         if ("HAND_WRITTEN".equals(marshaller)) {
+            serializationContext.registerMarshaller(new CryptoCurrencyMarshaller());
+         }
+         cryptoCurrency = new CryptoCurrency("Ethereum", rank);
+         encoded = ProtobufUtil.toByteArray(serializationContext, cryptoCurrency);
+         stream = new ByteArrayOutputStream(64);
+      }
+   }
+
+   @State(Scope.Thread)
+   public static class ReusedBuffer {
+      @Param({"7", "100000"})
+      int rank;
+
+      CryptoCurrencyMarshaller marshaller = new CryptoCurrencyMarshaller();
+      CryptoCurrency cryptoCurrency;
+      ByteBuffer buffer = ByteBuffer.allocate(64);
+
+      @Setup
+      public void setup() {
+         cryptoCurrency = new CryptoCurrency("Ethereum", rank);
+      }
+   }
+
+   @Benchmark
+   public int encode(Marshalling state) throws IOException {
+      state.stream.reset();
+      ProtobufUtil.writeTo(state.serializationContext, state.stream, state.cryptoCurrency);
+      return state.stream.size();
+   }
+
+   @Benchmark
+   public CryptoCurrency decode(Marshalling state) throws IOException {
+      return ProtobufUtil.fromByteArray(state.serializationContext, state.encoded, CryptoCurrency.class);
+   }
+
+   @Benchmark
+   public int encodeToReusedBuffer(ReusedBuffer state) throws IOException {
+      state.buffer.clear();
+      state.marshaller.writeTo(state.buffer, state.cryptoCurrency);
+      return state.buffer.position();
+   }
+
+   public static void main(String[] args) throws Exception {
+      new Runner(new OptionsBuilder()
+            .include(MarshallerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+   }
+}
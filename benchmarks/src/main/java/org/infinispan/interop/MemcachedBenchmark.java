@@ -0,0 +1,106 @@
+package org.infinispan.interop;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * Reads of <code>keysPerRead</code> JSON documents from the 'indexed' cache through memcached: one <code>get</code> per
+ * key on a bare <code>MemcachedClient</code>, as the demos do, versus a multi-key get on the {@link MemcachedPool}.
+ * Scores are reads of all the keys per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class MemcachedBenchmark {
+
+   static final int KEY_SPACE = 10_000;
+   static final int PORT = Scenario.PROTOBUF.memcachedPort;
+
+   @Param({"1", "16", "256"})
+   int keysPerRead;
+
+   @Param({"4"})
+   int connections;
+
+   private InteropServer server;
+   private MemcachedClient bareClient;
+   private MemcachedPool pool;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      server = InteropServer.start();
+      // The server converts the JSON documents to protobuf, so it needs the schema first
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder().marshaller(Scenario.PROTOBUF.marshaller()).build());
+      try {
+         Scenario.PROTOBUF.prepare(remoteCacheManager);
+      } finally {
+         remoteCacheManager.stop();
+      }
+      bareClient = new MemcachedClient(new InetSocketAddress(InteropServer.HOST, PORT));
+      pool = new MemcachedPool(InteropServer.HOST, connections);
+      MemcachedClient writer = pool.client(PORT);
+      for (int i = 0; i < KEY_SPACE; i++) {
+         writer.set("KEY-" + i, 0, Scenario.PROTOBUF.text(i)).get();
+      }
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      bareClient.shutdown();
+      pool.close();
+      server.close();
+   }
+
+   private List<String> keys() {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      List<String> keys = new ArrayList<>(keysPerRead);
+      for (int i = 0; i < keysPerRead; i++) {
+         keys.add("KEY-" + random.nextInt(KEY_SPACE));
+      }
+      return keys;
+   }
+
+   @Benchmark
+   public int bareGets() {
+      int found = 0;
+      for (String key : keys()) {
+         if (bareClient.get(key) != null) {
+            found++;
+         }
+      }
+      return found;
+   }
+
+   @Benchmark
+   public int pooledBulkGet() throws Exception {
+      Map<String, Object> values = pool.getBulk(PORT, keys());
+      return values.size();
+   }
+}
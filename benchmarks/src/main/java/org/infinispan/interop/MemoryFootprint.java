@@ -0,0 +1,183 @@
+package org.infinispan.interop;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.HdrHistogram.Histogram;
+import org.infinispan.AdvancedCache;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.configuration.cache.StorageType;
+import org.infinispan.container.offheap.OffHeapMemoryAllocator;
+
+/**
+ * Loads the same number of {@link CryptoCurrency} entries through Hot Rod in every storage mode of the demos, with the
+ * entries kept as objects, as bytes on the heap and as bytes off the heap, and reports what they cost the in-process
+ * server: heap retained after a full GC, off-heap bytes allocated, GC activity while loading and reading, and the
+ * latency of Hot Rod reads.
+ * <p>
+ * Every combination is measured in turn on the same server, and the memory held by the entries is what clearing the
+ * cache releases after a full GC. Run with a heap large enough for the biggest combination. Arguments are the number
+ * of entries (100000 by default) and, optionally, the scenarios to measure.
+ */
+public class MemoryFootprint {
+
+   static final int BATCH_SIZE = 1000;
+   static final int MAX_IN_FLIGHT = 4;
+   static final int MAX_READS = 100_000;
+
+   public static void main(String[] args) throws Exception {
+      int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+      EnumSet<Scenario> scenarios = EnumSet.allOf(Scenario.class);
+      if (args.length > 1) {
+         scenarios.clear();
+         for (int i = 1; i < args.length; i++) {
+            scenarios.add(Scenario.valueOf(args[i]));
+         }
+      }
+
+      List<Result> results = new ArrayList<>();
+      System.out.println(Result.HEADER);
+      try (InteropServer server = InteropServer.start()) {
+         for (Scenario scenario : scenarios) {
+            RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder().marshaller(scenario.marshaller()).build());
+            try {
+               scenario.prepare(remoteCacheManager);
+               for (StorageType storageType : StorageType.values()) {
+                  String cacheName = InteropServer.cacheName(scenario.cacheName, storageType);
+                  Result result = measure(server.getCacheManager().getCache(cacheName).getAdvancedCache(),
+                        remoteCacheManager.getCache(cacheName), scenario, entries);
+                  System.out.println(result);
+                  results.add(result);
+               }
+            } finally {
+               remoteCacheManager.stop();
+            }
+         }
+      }
+
+      System.out.printf("%n%,d entries per cache%n", entries);
+      System.out.println(Result.HEADER);
+      results.forEach(System.out::println);
+      System.exit(0);
+   }
+
+   private static Result measure(AdvancedCache<?, ?> cache, RemoteCache<Object, Object> remoteCache, Scenario scenario, int entries) throws InterruptedException {
+      cache.clear();
+      long[] gcBefore = gc();
+
+      BulkLoader.Result loaded = new BulkLoader<>(remoteCache, BATCH_SIZE, MAX_IN_FLIGHT)
+            .load(IntStream.range(0, entries)
+                  .<Map.Entry<Object, Object>>mapToObj(i -> new SimpleImmutableEntry<>(key(i), scenario.value(i)))
+                  .iterator());
+
+      Histogram latencies = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+      for (int i = 0; i < Math.min(entries, MAX_READS); i++) {
+         String key = key(ThreadLocalRandom.current().nextInt(entries));
+         long start = System.nanoTime();
+         if (remoteCache.get(key) == null) {
+            throw new IllegalStateException(key + " was evicted from " + cache.getName() + ", raise -Dinterop.memory.maxBytes");
+         }
+         latencies.recordValue(System.nanoTime() - start);
+      }
+      long[] gcAfter = gc();
+
+      // What the entries hold is what clearing the cache releases, which leaves out the buffers, pools and classes
+      // that loading the first entries initializes
+      int size = cache.size();
+      long heapLoaded = usedHeap();
+      long offHeapLoaded = offHeap(cache);
+      cache.clear();
+      long heapBytes = heapLoaded - usedHeap();
+      long offHeapBytes = offHeapLoaded - offHeap(cache);
+
+      return new Result(scenario, cache.getCacheConfiguration().memory().storageType(), size, loaded, heapBytes, offHeapBytes,
+            gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], latencies);
+   }
+
+   private static String key(int id) {
+      return "CUR-" + id;
+   }
+
+   /**
+    * The heap in use after a full collection.
+    */
+   static long usedHeap() throws InterruptedException {
+      for (int i = 0; i < 3; i++) {
+         System.gc();
+         Thread.sleep(100);
+      }
+      Runtime runtime = Runtime.getRuntime();
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+
+   private static long offHeap(AdvancedCache<?, ?> cache) {
+      OffHeapMemoryAllocator allocator = cache.getComponentRegistry().getComponent(OffHeapMemoryAllocator.class);
+      return allocator == null ? 0 : allocator.getAllocatedAmount();
+   }
+
+   /**
+    * The number of collections and the time spent in them so far, in milliseconds.
+    */
+   private static long[] gc() {
+      long[] gc = new long[2];
+      for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+         gc[0] += Math.max(collector.getCollectionCount(), 0);
+         gc[1] += Math.max(collector.getCollectionTime(), 0);
+      }
+      return gc;
+   }
+
+   static final class Result {
+      static final String HEADER = String.format("%-10s %-8s %10s %10s %14s %14s %11s %6s %8s %9s %9s %9s",
+            "scenario", "storage", "entries", "puts/s", "heap bytes", "off-heap bytes", "bytes/entry", "GCs", "GC ms", "p50 us", "p99 us", "p99.9 us");
+
+      final Scenario scenario;
+      final StorageType storageType;
+      final int entries;
+      final double putsPerSecond;
+      final long heapBytes;
+      final long offHeapBytes;
+      final long gcCount;
+      final long gcMillis;
+      final Histogram latencies;
+
+      Result(Scenario scenario, StorageType storageType, int entries, BulkLoader.Result loaded, long heapBytes, long offHeapBytes,
+             long gcCount, long gcMillis, Histogram latencies) {
+         if (entries != loaded.getRecords()) {
+            throw new IllegalStateException(String.format("%s %s holds %d of the %d entries loaded, raise -Dinterop.memory.maxBytes",
+                  scenario, storageType, entries, loaded.getRecords()));
+         }
+         this.scenario = scenario;
+         this.storageType = storageType;
+         this.entries = entries;
+         this.putsPerSecond = loaded.getRecordsPerSecond();
+         this.heapBytes = heapBytes;
+         this.offHeapBytes = offHeapBytes;
+         this.gcCount = gcCount;
+         this.gcMillis = gcMillis;
+         this.latencies = latencies;
+      }
+
+      long bytesPerEntry() {
+         return (heapBytes + offHeapBytes) / entries;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%-10s %-8s %,10d %,10.0f %,14d %,14d %,11d %,6d %,8d %,9.1f %,9.1f %,9.1f",
+               scenario, storageType, entries, putsPerSecond, heapBytes, offHeapBytes, bytesPerEntry(), gcCount, gcMillis,
+               latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(99) / 1000.0,
+               latencies.getValueAtPercentile(99.9) / 1000.0);
+      }
+   }
+}
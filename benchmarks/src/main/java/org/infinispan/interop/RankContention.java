@@ -0,0 +1,306 @@
+package org.infinispan.interop;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.HdrHistogram.Histogram;
+import org.apache.http.client.fluent.Executor;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.commons.marshall.UTF8StringMarshaller;
+import org.infinispan.interop.Utils.Endpoint;
+import org.infinispan.interop.VersionedCache.Backoff;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * Threads incrementing the <code>rank</code> of a few {@link CryptoCurrency} entries of the 'pojo-cache' from Hot Rod,
+ * REST and memcached, each endpoint alone and then all of them together, with each {@link Approach}:
+ * <ul>
+ * <li><code>BLIND</code>: read the value and write its increment, as the demos write, so concurrent increments of
+ * the same value overwrite each other,</li>
+ * <li><code>OPTIMISTIC</code>: {@link VersionedCache#update} writes the increment only if the entry has the version it
+ * was read with, and reads it again otherwise,</li>
+ * <li><code>LOCKED</code>: {@link CacheLock#update} takes a lock entry in the 'json-cache' before reading and writing
+ * the value, waiting while another thread holds it.</li>
+ * </ul>
+ * Both retry with the same random exponential backoff. Each run reports the increments per second, the attempts per
+ * increment beyond the first, which are conflicting writes for <code>OPTIMISTIC</code> and waits for the lock for
+ * <code>LOCKED</code>, the latency of an increment and the updates lost: the increments that returned but do not show in
+ * the final ranks.
+ * <p>
+ * Arguments are the seconds per run (10 by default), the number of threads (12), the number of entries they increment
+ * (1) and, optionally, the endpoints to use.
+ */
+public class RankContention {
+
+   static final String CACHE_NAME = "pojo-cache";
+   static final String LOCK_CACHE_NAME = "json-cache";
+   static final int MEMCACHED_PORT = 11213;
+   static final int LOCK_MEMCACHED_PORT = 11215;
+   static final Backoff BACKOFF = new Backoff(50, 5_000, TimeUnit.MICROSECONDS);
+   static final Expiration LEASE = Expiration.lifespan(5, TimeUnit.SECONDS);
+
+   private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+   public enum Approach {BLIND, OPTIMISTIC, LOCKED}
+
+   public static void main(String[] args) throws Exception {
+      int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+      int threads = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+      int keys = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+      EnumSet<Endpoint> endpoints = EnumSet.allOf(Endpoint.class);
+      if (args.length > 3) {
+         endpoints.clear();
+         for (int i = 3; i < args.length; i++) {
+            endpoints.add(Endpoint.valueOf(args[i]));
+         }
+      }
+      List<List<Endpoint>> mixes = new ArrayList<>();
+      endpoints.forEach(endpoint -> mixes.add(Collections.singletonList(endpoint)));
+      if (endpoints.size() > 1) {
+         mixes.add(new ArrayList<>(endpoints));
+      }
+
+      List<Result> results = new ArrayList<>();
+      System.out.println(Result.HEADER);
+      try (InteropServer server = InteropServer.start()) {
+         RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder()
+               .marshaller(Scenario.OBJECT.marshaller())
+               .addJavaSerialWhiteList(Pattern.quote(CryptoCurrency.class.getName())).build());
+         RemoteCacheManager lockCacheManager = new RemoteCacheManager(new ConfigurationBuilder().marshaller(new UTF8StringMarshaller()).build());
+         MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress(InteropServer.HOST, MEMCACHED_PORT));
+         MemcachedClient lockMemcachedClient = new MemcachedClient(new InetSocketAddress(InteropServer.HOST, LOCK_MEMCACHED_PORT));
+         Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
+         try {
+            RemoteCache<String, CryptoCurrency> remoteCache = remoteCacheManager.getCache(CACHE_NAME);
+            RemoteCache<String, String> lockCache = lockCacheManager.getCache(LOCK_CACHE_NAME);
+            Endpoints<CryptoCurrency> values = new Endpoints<>(
+                  VersionedCache.hotRod(remoteCache),
+                  VersionedCache.rest(requestExecutor, InteropCluster.restUrl(0, CACHE_NAME), RankContention::toJson, RankContention::fromJson),
+                  VersionedCache.memcached(memcachedClient, RankContention::toJson, RankContention::fromJson));
+            Endpoints<String> locks = new Endpoints<>(
+                  VersionedCache.hotRod(lockCache),
+                  VersionedCache.rest(requestExecutor, InteropCluster.restUrl(0, LOCK_CACHE_NAME), Function.identity(), Function.identity()),
+                  VersionedCache.memcached(lockMemcachedClient, Function.identity(), Function.identity()));
+
+            for (Approach approach : Approach.values()) {
+               for (List<Endpoint> mix : mixes) {
+                  Result result = new Run(approach, mix, remoteCache, values, locks, keys).run(seconds, threads);
+                  System.out.println(result);
+                  results.add(result);
+               }
+            }
+         } finally {
+            memcachedClient.shutdown();
+            lockMemcachedClient.shutdown();
+            lockCacheManager.stop();
+            remoteCacheManager.stop();
+         }
+      }
+
+      System.out.printf("%n%d seconds per run, %d threads incrementing %d entries%n", seconds, threads, keys);
+      System.out.println(Result.HEADER);
+      results.forEach(System.out::println);
+      System.exit(0);
+   }
+
+   static String key(int i) {
+      return "RANK-" + i;
+   }
+
+   static String toJson(CryptoCurrency value) {
+      return "{\"_type\":\"org.infinispan.interop.CryptoCurrency\",\"description\":\"" + value.getDescription()
+            + "\",\"rank\":" + value.getRank() + "}";
+   }
+
+   static CryptoCurrency fromJson(String json) {
+      try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+         CryptoCurrency value = new CryptoCurrency();
+         if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Not a JSON object: " + json);
+         }
+         while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("description".equals(field)) {
+               value.description = parser.getText();
+            } else if ("rank".equals(field)) {
+               value.rank = parser.getIntValue();
+            }
+         }
+         return value;
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**
+    * The same cache through each endpoint.
+    */
+   private static final class Endpoints<V> {
+      private final VersionedCache<V> hotRod;
+      private final VersionedCache<V> rest;
+      private final VersionedCache<V> memcached;
+
+      Endpoints(VersionedCache<V> hotRod, VersionedCache<V> rest, VersionedCache<V> memcached) {
+         this.hotRod = hotRod;
+         this.rest = rest;
+         this.memcached = memcached;
+      }
+
+      VersionedCache<V> get(Endpoint endpoint) {
+         switch (endpoint) {
+            case HOT_ROD:
+               return hotRod;
+            case REST:
+               return rest;
+            default:
+               return memcached;
+         }
+      }
+   }
+
+   private static final class Run {
+      private final Approach approach;
+      private final List<Endpoint> mix;
+      private final RemoteCache<String, CryptoCurrency> remoteCache;
+      private final Endpoints<CryptoCurrency> values;
+      private final Endpoints<String> locks;
+      private final int keys;
+
+      private final AtomicBoolean running = new AtomicBoolean(true);
+      private final LongAdder increments = new LongAdder();
+      private final LongAdder attempts = new LongAdder();
+      private final LongAdder errors = new LongAdder();
+      private final LongAccumulator maxAttempts = new LongAccumulator(Math::max, 0);
+
+      Run(Approach approach, List<Endpoint> mix, RemoteCache<String, CryptoCurrency> remoteCache,
+          Endpoints<CryptoCurrency> values, Endpoints<String> locks, int keys) {
+         this.approach = approach;
+         this.mix = mix;
+         this.remoteCache = remoteCache;
+         this.values = values;
+         this.locks = locks;
+         this.keys = keys;
+      }
+
+      Result run(int seconds, int threads) throws InterruptedException {
+         for (int i = 0; i < keys; i++) {
+            remoteCache.put(key(i), new CryptoCurrency(key(i), 0));
+         }
+
+         List<Thread> workers = new ArrayList<>();
+         Histogram[] latencies = new Histogram[threads];
+         for (int i = 0; i < threads; i++) {
+            Endpoint endpoint = mix.get(i % mix.size());
+            Histogram histogram = latencies[i] = new Histogram(3);
+            Thread worker = new Thread(() -> increment(endpoint, histogram), approach + "-" + endpoint + "-" + i);
+            worker.start();
+            workers.add(worker);
+         }
+         Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+         running.set(false);
+         for (Thread worker : workers) {
+            worker.join();
+         }
+
+         long ranks = 0;
+         for (int i = 0; i < keys; i++) {
+            ranks += remoteCache.get(key(i)).getRank();
+         }
+         Histogram latency = new Histogram(3);
+         Arrays.stream(latencies).forEach(latency::add);
+         return new Result(approach, mix, threads, seconds, increments.sum(), attempts.sum(), maxAttempts.get(),
+               increments.sum() - ranks, errors.sum(), latency);
+      }
+
+      private void increment(Endpoint endpoint, Histogram latencies) {
+         VersionedCache<CryptoCurrency> cache = values.get(endpoint);
+         CacheLock lock = new CacheLock(locks.get(endpoint), LEASE, BACKOFF);
+         UnaryOperator<CryptoCurrency> increment = value -> new CryptoCurrency(value.getDescription(), value.getRank() + 1);
+         while (running.get()) {
+            String key = key(ThreadLocalRandom.current().nextInt(keys));
+            long start = System.nanoTime();
+            try {
+               int attempts;
+               switch (approach) {
+                  case BLIND:
+                     cache.put(key, increment.apply(cache.get(key).getValue()));
+                     attempts = 1;
+                     break;
+                  case OPTIMISTIC:
+                     attempts = cache.update(key, increment, BACKOFF);
+                     break;
+                  default:
+                     attempts = lock.update(cache, key, increment);
+                     break;
+               }
+               latencies.recordValue(System.nanoTime() - start);
+               increments.increment();
+               this.attempts.add(attempts);
+               maxAttempts.accumulate(attempts);
+            } catch (Exception e) {
+               errors.increment();
+            }
+         }
+      }
+   }
+
+   static final class Result {
+      static final String HEADER = String.format("%-10s %-25s %7s %10s %11s %8s %9s %7s %10s %10s %10s",
+            "approach", "endpoints", "threads", "updates/s", "retries/upd", "max att", "lost", "errors", "p50 us",
+            "p99 us", "p99.9 us");
+
+      final Approach approach;
+      final String endpoints;
+      final int threads;
+      final double updatesPerSecond;
+      final double retriesPerUpdate;
+      final long maxAttempts;
+      final long lost;
+      final long errors;
+      final Histogram latencies;
+
+      Result(Approach approach, List<Endpoint> endpoints, int threads, int seconds, long updates, long attempts,
+             long maxAttempts, long lost, long errors, Histogram latencies) {
+         this.approach = approach;
+         this.endpoints = endpoints.stream().map(Endpoint::name).collect(Collectors.joining(","));
+         this.threads = threads;
+         this.updatesPerSecond = (double) updates / seconds;
+         this.retriesPerUpdate = updates == 0 ? 0 : (double) (attempts - updates) / updates;
+         this.maxAttempts = maxAttempts;
+         this.lost = lost;
+         this.errors = errors;
+         this.latencies = latencies;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%-10s %-25s %7d %,10.0f %11.2f %,8d %,9d %,7d %,10.1f %,10.1f %,10.1f",
+               approach, endpoints, threads, updatesPerSecond, retriesPerUpdate, maxAttempts, lost, errors,
+               latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(99) / 1000.0,
+               latencies.getValueAtPercentile(99.9) / 1000.0);
+      }
+   }
+}
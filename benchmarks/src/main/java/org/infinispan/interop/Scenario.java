@@ -0,0 +1,140 @@
+package org.infinispan.interop;
+
+import java.io.IOException;
+
+import org.apache.http.entity.ContentType;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.marshall.ProtoStreamMarshaller;
+import org.infinispan.commons.marshall.Marshaller;
+import org.infinispan.commons.marshall.UTF8StringMarshaller;
+import org.infinispan.commons.marshall.jboss.GenericJBossMarshaller;
+
+/**
+ * The storage modes covered by the demos: which cache each one uses, how the Hot Rod client marshalls values and how
+ * the same value looks when sent as text over REST and memcached.
+ */
+public enum Scenario {
+
+   /**
+    * {@link StringInterop}: 'text/plain' storage.
+    */
+   STRING("string-cache", 11211, ContentType.create("text/plain", "UTF-8")) {
+      @Override
+      Marshaller marshaller() {
+         return new UTF8StringMarshaller();
+      }
+
+      @Override
+      Object value(int id) {
+         return "Currency " + id;
+      }
+
+      @Override
+      String text(int id) {
+         return "Currency " + id;
+      }
+   },
+
+   /**
+    * {@link JsonInterop}: 'application/json' storage.
+    */
+   JSON("json-cache", 11215, ContentType.APPLICATION_JSON) {
+      @Override
+      Marshaller marshaller() {
+         return new UTF8StringMarshaller();
+      }
+
+      @Override
+      Object value(int id) {
+         return text(id);
+      }
+
+      @Override
+      String text(int id) {
+         return "{\"description\":\"Currency " + id + "\",\"rank\":" + id + "}";
+      }
+   },
+
+   /**
+    * {@link ObjectStorageInterop}: 'application/x-java-object' storage.
+    */
+   OBJECT("pojo-cache", 11213, ContentType.APPLICATION_JSON) {
+      @Override
+      Marshaller marshaller() {
+         return new GenericJBossMarshaller();
+      }
+
+      @Override
+      String text(int id) {
+         return "{\"_type\":\"org.infinispan.interop.CryptoCurrency\",\"description\":\"Currency " + id + "\",\"rank\":" + id + "}";
+      }
+   },
+
+   /**
+    * {@link MarshalledStorageInterop}: 'application/x-jboss-marshalling' storage.
+    */
+   MARSHALLED("marshalled-pojo-cache", 11212, ContentType.APPLICATION_JSON) {
+      @Override
+      Marshaller marshaller() {
+         return new GenericJBossMarshaller();
+      }
+
+      @Override
+      String text(int id) {
+         return "{\"_type\":\"org.infinispan.interop.CryptoCurrency\",\"description\":\"Currency " + id + "\",\"rank\":" + id + "}";
+      }
+   },
+
+   /**
+    * {@link ProtobufInterop}: protobuf storage in the indexed cache.
+    */
+   PROTOBUF("indexed", 11214, ContentType.APPLICATION_JSON) {
+      @Override
+      Marshaller marshaller() {
+         return new ProtoStreamMarshaller();
+      }
+
+      @Override
+      void prepare(RemoteCacheManager remoteCacheManager) throws IOException {
+         Utils.registerSchema(remoteCacheManager);
+      }
+
+      @Override
+      String text(int id) {
+         return "{\"_type\":\"CryptoCurrency\",\"description\":\"Currency " + id + "\",\"rank\":" + id + "}";
+      }
+   };
+
+   final String cacheName;
+   final int memcachedPort;
+   final ContentType contentType;
+
+   Scenario(String cacheName, int memcachedPort, ContentType contentType) {
+      this.cacheName = cacheName;
+      this.memcachedPort = memcachedPort;
+      this.contentType = contentType;
+   }
+
+   /**
+    * The marshaller the demo configures in the Hot Rod client.
+    */
+   abstract Marshaller marshaller();
+
+   /**
+    * Performs any client or server registration needed before the cache can be used.
+    */
+   void prepare(RemoteCacheManager remoteCacheManager) throws IOException {
+   }
+
+   /**
+    * The value written by the Hot Rod client for the given id.
+    */
+   Object value(int id) {
+      return new CryptoCurrency("Currency " + id, id);
+   }
+
+   /**
+    * The value written by the REST and memcached clients for the given id.
+    */
+   abstract String text(int id);
+}
@@ -0,0 +1,343 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.Histogram;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.infinispan.AdvancedCache;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.interop.Utils.Endpoint;
+
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * Price ticks of a large number of symbols written to the 'price-ticks' cache of the in-process server from Hot Rod,
+ * REST and memcached, while Hot Rod clients read the last price of the same symbols, with the {@link Expiration} of each
+ * {@link Policy} in turn:
+ * <ul>
+ * <li><code>IMMORTAL</code>: entries never expire, as with the <code>set(key, -1, value)</code> of the demos, and the
+ * cache only stays bounded by evicting entries once it holds 100000 of them, or
+ * <code>-Dinterop.priceTicks.maxEntries</code>,</li>
+ * <li><code>CACHE_DEFAULT</code>: the 10 seconds lifespan of the cache,</li>
+ * <li><code>LIFESPAN</code>: a lifespan of 2 seconds sent with every write,</li>
+ * <li><code>MAX_IDLE</code>: the lifespan of the cache, and expiring after 2 seconds without a read, except for the
+ * entries written from memcached, which has no max idle time.</li>
+ * </ul>
+ * Symbols are written and read with a Zipfian distribution, so a few of them tick all the time and most of them
+ * rarely: the hit ratio of the reads is the share of prices still in the cache. Each policy is measured for the same
+ * time, reporting the entries held, the heap they retain after a full GC, what each run of the expiration reaper costs
+ * and the latency of the reads. The simulator disables the reaper of the server and runs it itself, every second or
+ * every <code>-Dinterop.expiration.reaperIntervalMillis</code>, to time it.
+ * <p>
+ * Arguments are the seconds per policy (30 by default), the ticks per second over the three endpoints (3000), the
+ * number of symbols (1000000), the exponent of the distribution (0.99) and, optionally, the policies to measure.
+ */
+public class TickSimulator {
+
+   static final String REAPER_INTERVAL_PROPERTY = "interop.expiration.reaperIntervalMillis";
+   static final int MEMCACHED_PORT = 11216;
+   static final int READERS = 2;
+   static final long SAMPLE_MILLIS = 1000;
+
+   public enum Policy {
+      IMMORTAL(Expiration.IMMORTAL),
+      CACHE_DEFAULT(Expiration.CACHE_DEFAULT),
+      LIFESPAN(Expiration.lifespan(2, TimeUnit.SECONDS)),
+      MAX_IDLE(Expiration.CACHE_DEFAULT.maxIdle(2, TimeUnit.SECONDS));
+
+      final Expiration expiration;
+
+      Policy(Expiration expiration) {
+         this.expiration = expiration;
+      }
+   }
+
+   public static void main(String[] args) throws Exception {
+      int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+      int ticksPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+      int symbols = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+      double exponent = args.length > 3 ? Double.parseDouble(args[3]) : 0.99;
+      EnumSet<Policy> policies = EnumSet.allOf(Policy.class);
+      if (args.length > 4) {
+         policies.clear();
+         for (int i = 4; i < args.length; i++) {
+            policies.add(Policy.valueOf(args[i]));
+         }
+      }
+
+      // Read by the server when it defines the cache
+      long reaperIntervalMillis = Long.getLong(REAPER_INTERVAL_PROPERTY, 1000);
+      System.setProperty(REAPER_INTERVAL_PROPERTY, "0");
+
+      Zipf zipf = new Zipf(symbols, exponent);
+      List<Result> results = new ArrayList<>();
+      System.out.println(Result.HEADER);
+      try (InteropServer server = InteropServer.start()) {
+         AdvancedCache<?, ?> cache = server.getCacheManager().getCache(InteropServer.PRICE_TICKS).getAdvancedCache();
+         RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder()
+               .marshaller(Scenario.OBJECT.marshaller())
+               .addJavaSerialWhiteList(Pattern.quote(CryptoCurrency.class.getName())).build());
+         MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress(InteropServer.HOST, MEMCACHED_PORT));
+         Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
+         try {
+            RemoteCache<String, CryptoCurrency> remoteCache = remoteCacheManager.getCache(InteropServer.PRICE_TICKS);
+            for (Policy policy : policies) {
+               Simulation simulation = new Simulation(policy, cache, remoteCache, memcachedClient, requestExecutor, zipf);
+               Result result = simulation.run(seconds, ticksPerSecond, reaperIntervalMillis);
+               System.out.println(result);
+               results.add(result);
+            }
+         } finally {
+            memcachedClient.shutdown();
+            remoteCacheManager.stop();
+         }
+      }
+
+      System.out.printf("%n%d seconds per policy, %,d ticks/s over %,d symbols, exponent %.2f, reaper every %d ms%n",
+            seconds, ticksPerSecond, symbols, exponent, reaperIntervalMillis);
+      System.out.println(Result.HEADER);
+      results.forEach(System.out::println);
+      System.exit(0);
+   }
+
+   static String symbol(int rank) {
+      return "SYM-" + rank;
+   }
+
+   private static final class Simulation {
+      private final Policy policy;
+      private final AdvancedCache<?, ?> cache;
+      private final RemoteCache<String, CryptoCurrency> remoteCache;
+      private final MemcachedClient memcachedClient;
+      private final Executor requestExecutor;
+      private final Zipf zipf;
+
+      private final AtomicBoolean running = new AtomicBoolean(true);
+      private final LongAdder ticks = new LongAdder();
+      private final LongAdder errors = new LongAdder();
+      private final LongAdder reads = new LongAdder();
+      private final LongAdder hits = new LongAdder();
+      private final LongAccumulator maxEntries = new LongAccumulator(Math::max, 0);
+      // Only recorded by the thread running the reaper
+      private final Histogram sweeps = new Histogram(3);
+      private long expired;
+
+      Simulation(Policy policy, AdvancedCache<?, ?> cache, RemoteCache<String, CryptoCurrency> remoteCache,
+                 MemcachedClient memcachedClient, Executor requestExecutor, Zipf zipf) {
+         this.policy = policy;
+         this.cache = cache;
+         this.remoteCache = remoteCache;
+         this.memcachedClient = memcachedClient;
+         this.requestExecutor = requestExecutor;
+         this.zipf = zipf;
+      }
+
+      Result run(int seconds, int ticksPerSecond, long reaperIntervalMillis) throws InterruptedException {
+         cache.clear();
+
+         List<Thread> threads = new ArrayList<>();
+         for (Endpoint endpoint : Endpoint.values()) {
+            threads.add(start("ticks-" + endpoint, ticksPerSecond / Endpoint.values().length, () -> tick(endpoint)));
+         }
+         Histogram[] latencies = new Histogram[READERS];
+         for (int i = 0; i < READERS; i++) {
+            Histogram histogram = latencies[i] = new Histogram(3);
+            threads.add(start("reads-" + i, ticksPerSecond / READERS, () -> read(histogram)));
+         }
+
+         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+         scheduler.scheduleAtFixedRate(this::sweep, reaperIntervalMillis, reaperIntervalMillis, TimeUnit.MILLISECONDS);
+         scheduler.scheduleAtFixedRate(() -> maxEntries.accumulate(cache.getDataContainer().sizeIncludingExpired()),
+               0, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+         Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+         running.set(false);
+         for (Thread thread : threads) {
+            thread.join();
+         }
+         scheduler.shutdown();
+         scheduler.awaitTermination(1, TimeUnit.MINUTES);
+
+         // What the entries retain is what clearing the cache releases
+         int entries = cache.getDataContainer().sizeIncludingExpired();
+         long heapLoaded = MemoryFootprint.usedHeap();
+         cache.clear();
+         long heapBytes = heapLoaded - MemoryFootprint.usedHeap();
+
+         Histogram readLatencies = new Histogram(3);
+         Arrays.stream(latencies).forEach(readLatencies::add);
+         return new Result(policy, seconds, ticks.sum(), errors.sum(), reads.sum(), hits.sum(), maxEntries.get(), entries,
+               heapBytes, sweeps, expired, readLatencies);
+      }
+
+      private Thread start(String name, int perSecond, Runnable operation) {
+         Thread thread = new Thread(() -> paced(Math.max(perSecond, 1), operation), name);
+         thread.start();
+         return thread;
+      }
+
+      /**
+       * Runs the operation at a constant rate, catching up at most a second when it falls behind.
+       */
+      private void paced(int perSecond, Runnable operation) {
+         long interval = TimeUnit.SECONDS.toNanos(1) / perSecond;
+         long next = System.nanoTime();
+         while (running.get()) {
+            operation.run();
+            next = Math.max(next + interval, System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+               LockSupport.parkNanos(wait);
+            }
+         }
+      }
+
+      private void tick(Endpoint endpoint) {
+         int rank = zipf.next();
+         String key = symbol(rank);
+         int price = ThreadLocalRandom.current().nextInt(1, 100_000);
+         try {
+            switch (endpoint) {
+               case HOT_ROD:
+                  policy.expiration.put(remoteCache, key, new CryptoCurrency(key, price));
+                  break;
+               case REST:
+                  int status = requestExecutor.execute(policy.expiration.headers(
+                        Request.Put(InteropCluster.restUrl(0, InteropServer.PRICE_TICKS) + key).bodyString(json(key, price), ContentType.APPLICATION_JSON)))
+                        .returnResponse().getStatusLine().getStatusCode();
+                  if (status >= 300) {
+                     errors.increment();
+                     return;
+                  }
+                  break;
+               case MEMCACHED:
+                  if (!memcachedClient.set(key, policy.expiration.memcachedExpiration(), json(key, price).getBytes(UTF_8)).get()) {
+                     errors.increment();
+                     return;
+                  }
+                  break;
+            }
+            ticks.increment();
+         } catch (Exception e) {
+            errors.increment();
+         }
+      }
+
+      private void read(Histogram latencies) {
+         String key = symbol(zipf.next());
+         long start = System.nanoTime();
+         try {
+            CryptoCurrency price = remoteCache.get(key);
+            latencies.recordValue(System.nanoTime() - start);
+            reads.increment();
+            if (price != null) {
+               hits.increment();
+            }
+         } catch (Exception e) {
+            errors.increment();
+         }
+      }
+
+      /**
+       * A run of the expiration reaper, which removes the expired entries that were not read since they expired.
+       */
+      private void sweep() {
+         int before = cache.getDataContainer().sizeIncludingExpired();
+         long start = System.nanoTime();
+         cache.getExpirationManager().processExpiration();
+         sweeps.recordValue(System.nanoTime() - start);
+         // Approximate, as entries are written meanwhile
+         expired += Math.max(before - cache.getDataContainer().sizeIncludingExpired(), 0);
+      }
+
+      private static String json(String symbol, int price) {
+         return "{\"_type\":\"org.infinispan.interop.CryptoCurrency\",\"description\":\"" + symbol + "\",\"rank\":" + price + "}";
+      }
+   }
+
+   /**
+    * Ranks from 0, the most frequent, to <code>n - 1</code>, with probabilities proportional to
+    * <code>1 / (rank + 1)^exponent</code>.
+    */
+   static final class Zipf {
+      private final double[] cumulative;
+
+      Zipf(int n, double exponent) {
+         cumulative = new double[n];
+         double sum = 0;
+         for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+         }
+         for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+         }
+      }
+
+      int next() {
+         int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+         return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+      }
+   }
+
+   static final class Result {
+      static final String HEADER = String.format("%-13s %8s %7s %8s %6s %9s %9s %10s %6s %6s %9s %9s %9s %9s %9s %9s",
+            "policy", "ticks/s", "errors", "reads/s", "hits", "max size", "size", "heap MB", "B/ent", "sweeps",
+            "sweep ms", "max ms", "expired", "p50 us", "p99 us", "p99.9 us");
+
+      final Policy policy;
+      final double ticksPerSecond;
+      final long errors;
+      final double readsPerSecond;
+      final double hitRatio;
+      final long maxEntries;
+      final int entries;
+      final long heapBytes;
+      final Histogram sweeps;
+      final long expired;
+      final Histogram latencies;
+
+      Result(Policy policy, int seconds, long ticks, long errors, long reads, long hits, long maxEntries, int entries,
+             long heapBytes, Histogram sweeps, long expired, Histogram latencies) {
+         this.policy = policy;
+         this.ticksPerSecond = (double) ticks / seconds;
+         this.errors = errors;
+         this.readsPerSecond = (double) reads / seconds;
+         this.hitRatio = reads == 0 ? 0 : (double) hits / reads;
+         this.maxEntries = maxEntries;
+         this.entries = entries;
+         this.heapBytes = heapBytes;
+         this.sweeps = sweeps;
+         this.expired = expired;
+         this.latencies = latencies;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%-13s %,8.0f %,7d %,8.0f %5.1f%% %,9d %,9d %,10.1f %,6d %,6d %,9.2f %,9.2f %,9d %,9.1f %,9.1f %,9.1f",
+               policy, ticksPerSecond, errors, readsPerSecond, hitRatio * 100, maxEntries, entries, heapBytes / 1e6,
+               entries == 0 ? 0 : heapBytes / entries, sweeps.getTotalCount(), sweeps.getMean() / 1e6,
+               sweeps.getMaxValue() / 1e6, expired, latencies.getValueAtPercentile(50) / 1000.0,
+               latencies.getValueAtPercentile(99) / 1000.0, latencies.getValueAtPercentile(99.9) / 1000.0);
+      }
+   }
+}
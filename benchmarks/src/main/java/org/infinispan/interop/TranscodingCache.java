@@ -0,0 +1,172 @@
+package org.infinispan.interop;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.infinispan.commons.dataconversion.Encoder;
+import org.infinispan.commons.dataconversion.MediaType;
+import org.infinispan.commons.dataconversion.Transcoder;
+import org.infinispan.commons.dataconversion.Wrapper;
+import org.infinispan.configuration.cache.StorageType;
+import org.infinispan.factories.GlobalComponentRegistry;
+import org.infinispan.factories.impl.BasicComponentRegistry;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.core.EncoderRegistry;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachemanagerlistener.annotation.CacheStarted;
+import org.infinispan.notifications.cachemanagerlistener.event.CacheStartedEvent;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Keeps the result of converting stored values to the format requested by an endpoint, so that the same entry read
+ * again in the same format, e.g. a 'marshalled-pojo-cache' entry read as JSON from REST or memcached, is converted once
+ * per write instead of once per read.
+ * <p>
+ * Conversions are cached by stored value instance and target media type. A write replaces the stored instance, so it
+ * is equivalent to caching by key, version and media type: the next read misses, and the entries of overwritten values
+ * are dropped once the value is garbage collected, as keys are weakly referenced. The cache is bounded and its
+ * frequency based admission keeps one-off conversions, such as the ones of incoming writes, from evicting hot entries.
+ * <p>
+ * It is installed in place of the {@link EncoderRegistry} of the cache manager, and applies to the caches started
+ * afterwards, except the off-heap and binary ones: their values are copied to a new instance on every read, so a
+ * conversion would never be found again, and these caches get the encoder registry of the cache manager instead.
+ */
+@Listener
+final class TranscodingCache implements EncoderRegistry {
+
+   private final EncoderRegistry delegate;
+   private final Cache<Object, Map<MediaType, Object>> conversions;
+   private final Map<Transcoder, Transcoder> cachingTranscoders = new ConcurrentHashMap<>();
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+
+   private TranscodingCache(EncoderRegistry delegate, Cache<Object, Map<MediaType, Object>> conversions) {
+      this.delegate = delegate;
+      this.conversions = conversions;
+   }
+
+   /**
+    * Wraps the encoder registry of <code>cacheManager</code> with a cache of at most <code>maxEntries</code> values.
+    */
+   static TranscodingCache install(EmbeddedCacheManager cacheManager, long maxEntries) {
+      GlobalComponentRegistry globalComponentRegistry = cacheManager.getGlobalComponentRegistry();
+      TranscodingCache transcodingCache = new TranscodingCache(globalComponentRegistry.getComponent(EncoderRegistry.class),
+            Caffeine.newBuilder().weakKeys().maximumSize(maxEntries).build());
+      globalComponentRegistry.getComponent(BasicComponentRegistry.class)
+            .replaceComponent(EncoderRegistry.class.getName(), transcodingCache, false);
+      cacheManager.addListener(transcodingCache);
+      return transcodingCache;
+   }
+
+   /**
+    * Gives the off-heap and binary caches a registry that does not cache, before the endpoints convert their values: the
+    * notification is synchronous, and the conversions of the endpoints are set up once the cache has started.
+    */
+   @CacheStarted
+   public void cacheStarted(CacheStartedEvent event) {
+      EmbeddedCacheManager cacheManager = event.getCacheManager();
+      if (cacheManager.getCacheConfiguration(event.getCacheName()).memory().storageType() != StorageType.OBJECT) {
+         // Not getCache(), which waits for the start this notification is part of
+         cacheManager.getGlobalComponentRegistry().getNamedComponentRegistry(event.getCacheName())
+               .getComponent(BasicComponentRegistry.class)
+               .registerComponent(EncoderRegistry.class.getName(), new TranscodingCache(delegate, null), false);
+      }
+   }
+
+   long hits() {
+      return hits.sum();
+   }
+
+   long misses() {
+      return misses.sum();
+   }
+
+   @Override
+   public Transcoder getTranscoder(MediaType mediaType, MediaType another) {
+      if (conversions == null) {
+         return delegate.getTranscoder(mediaType, another);
+      }
+      return cachingTranscoders.computeIfAbsent(delegate.getTranscoder(mediaType, another), CachingTranscoder::new);
+   }
+
+   @Override
+   public Encoder getEncoder(Class<? extends Encoder> encoderClass, Short encoderId) {
+      return delegate.getEncoder(encoderClass, encoderId);
+   }
+
+   @Override
+   public boolean isRegistered(Class<? extends Encoder> encoderClass) {
+      return delegate.isRegistered(encoderClass);
+   }
+
+   @Override
+   public Wrapper getWrapper(Class<? extends Wrapper> wrapperClass, Byte wrapperId) {
+      return delegate.getWrapper(wrapperClass, wrapperId);
+   }
+
+   @Override
+   public void registerEncoder(Encoder encoder) {
+      delegate.registerEncoder(encoder);
+   }
+
+   @Override
+   public void registerWrapper(Wrapper wrapper) {
+      delegate.registerWrapper(wrapper);
+   }
+
+   @Override
+   public void registerTranscoder(Transcoder transcoder) {
+      delegate.registerTranscoder(transcoder);
+   }
+
+   @Override
+   public boolean isConversionSupported(MediaType mediaType, MediaType another) {
+      return delegate.isConversionSupported(mediaType, another);
+   }
+
+   private final class CachingTranscoder implements Transcoder {
+      private final Transcoder transcoder;
+
+      CachingTranscoder(Transcoder transcoder) {
+         this.transcoder = transcoder;
+      }
+
+      @Override
+      public Object transcode(Object content, MediaType contentType, MediaType destinationType) {
+         if (content == null) {
+            return null;
+         }
+         Map<MediaType, Object> byMediaType = conversions.get(content, stored -> new ConcurrentHashMap<>(4));
+         Object converted = byMediaType.get(destinationType);
+         if (converted != null) {
+            hits.increment();
+            return converted;
+         }
+         misses.increment();
+         converted = transcoder.transcode(content, contentType, destinationType);
+         if (converted != null) {
+            byMediaType.put(destinationType, converted);
+         }
+         return converted;
+      }
+
+      @Override
+      public Set<MediaType> getSupportedMediaTypes() {
+         return transcoder.getSupportedMediaTypes();
+      }
+
+      @Override
+      public boolean supportsConversion(MediaType mediaType, MediaType other) {
+         return transcoder.supportsConversion(mediaType, other);
+      }
+
+      @Override
+      public boolean supports(MediaType mediaType) {
+         return transcoder.supports(mediaType);
+      }
+   }
+}
@@ -0,0 +1,259 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.entity.ContentType;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.commons.CacheException;
+import org.infinispan.commons.marshall.UTF8StringMarshaller;
+
+import net.spy.memcached.ConnectionFactoryBuilder;
+import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.internal.GetFuture;
+import net.spy.memcached.internal.OperationFuture;
+
+/**
+ * The write-from-one-endpoint, read-from-another flows of {@link StringInterop} without blocking: each {@link Flow} is
+ * a {@link CompletableFuture} composed from the Hot Rod <code>putAsync</code>/<code>getAsync</code>, the
+ * {@link AsyncRestClient} and the spymemcached futures, completing with the value read back, or exceptionally when
+ * either request failed or the value read is not the one written.
+ * <p>
+ * {@link #run(Flow, int, int)} keeps up to <code>maxInFlight</code> flows outstanding, starting a new one as soon as
+ * another completes, so hundreds of cross-endpoint round trips overlap instead of being paid one after the other.
+ */
+public class AsyncInterop implements AutoCloseable {
+
+   static final String CACHE_NAME = "string-cache";
+   static final int MEMCACHED_PORT = 11211;
+
+   private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+   /**
+    * Writes a value from one endpoint and reads it from another once the write has been acknowledged.
+    */
+   public enum Flow {
+      HOT_ROD_TO_REST {
+         @Override
+         CompletableFuture<String> write(AsyncInterop interop, String key, String value) {
+            return interop.remoteCache.putAsync(key, value)
+                  .thenCompose(ignored -> interop.restClient.get(CACHE_NAME, key, ContentType.TEXT_PLAIN.getMimeType()))
+                  .thenApply(bytes -> bytes == null ? null : new String(bytes, UTF_8));
+         }
+      },
+      REST_TO_MEMCACHED {
+         @Override
+         CompletableFuture<String> write(AsyncInterop interop, String key, String value) {
+            return interop.restClient.post(CACHE_NAME, key, value.getBytes(UTF_8), ContentType.TEXT_PLAIN)
+                  .thenCompose(ignored -> toCompletableFuture(interop.memcachedClient.asyncGet(key)))
+                  .thenApply(read -> (String) read);
+         }
+      },
+      MEMCACHED_TO_HOT_ROD {
+         @Override
+         CompletableFuture<String> write(AsyncInterop interop, String key, String value) {
+            return toCompletableFuture(interop.memcachedClient.set(key, 0, value))
+                  .thenCompose(stored -> {
+                     if (!stored) {
+                        throw new CompletionException(new CacheException("Memcached did not store " + key));
+                     }
+                     return interop.remoteCache.getAsync(key);
+                  });
+         }
+      };
+
+      abstract CompletableFuture<String> write(AsyncInterop interop, String key, String value);
+   }
+
+   private final RemoteCacheManager remoteCacheManager;
+   private final RemoteCache<String, String> remoteCache;
+   private final AsyncRestClient restClient;
+   private final MemcachedClient memcachedClient;
+
+   public AsyncInterop(String host, int restConnections) throws IOException {
+      this.remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder()
+            .addServer().host(host)
+            .marshaller(new UTF8StringMarshaller())
+            .build());
+      this.remoteCache = remoteCacheManager.getCache(CACHE_NAME);
+      this.restClient = new AsyncRestClient(host, 8080, "dev", "dev", restConnections);
+      this.memcachedClient = new MemcachedClient(new ConnectionFactoryBuilder()
+            .setUseNagleAlgorithm(false)
+            .setOpTimeout(MemcachedPool.TIMEOUT_MILLIS)
+            .setDaemon(true)
+            .build(), Collections.singletonList(new InetSocketAddress(host, MEMCACHED_PORT)));
+   }
+
+   /**
+    * Starts one flow, completing with the value read back from the second endpoint.
+    *
+    * @throws CompletionException from the returned future if a request failed or the value read back differs.
+    */
+   public CompletableFuture<String> start(Flow flow, String key, String value) {
+      return flow.write(this, key, value).thenApply(read -> {
+         if (!value.equals(read)) {
+            throw new CompletionException(new CacheException(String.format("%s: wrote '%s' to %s, read '%s'", flow, value, key, read)));
+         }
+         return read;
+      });
+   }
+
+   /**
+    * Runs <code>flows</code> flows on distinct keys, with at most <code>maxInFlight</code> outstanding, blocking until
+    * all of them have completed.
+    *
+    * @throws CacheException if any of the flows failed; no flow is started after the first failure is seen.
+    */
+   public Result run(Flow flow, int flows, int maxInFlight) throws InterruptedException {
+      if (maxInFlight < 1) {
+         throw new IllegalArgumentException("maxInFlight must be positive");
+      }
+      Semaphore inFlight = new Semaphore(maxInFlight);
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+      long run = ThreadLocalRandom.current().nextLong();
+
+      long start = System.nanoTime();
+      for (int i = 0; i < flows; i++) {
+         inFlight.acquire();
+         if (failure.get() != null) {
+            inFlight.release();
+            break;
+         }
+         String key = flow + "-" + i;
+         long flowStart = System.nanoTime();
+         start(flow, key, key + "@" + run).whenComplete((read, throwable) -> {
+            if (throwable != null) {
+               failure.compareAndSet(null, throwable instanceof CompletionException ? throwable.getCause() : throwable);
+            } else {
+               latencies.recordValue(Math.min(System.nanoTime() - flowStart, HIGHEST_TRACKABLE_NANOS));
+            }
+            inFlight.release();
+         });
+      }
+
+      // Wait for the outstanding flows
+      inFlight.acquire(maxInFlight);
+      inFlight.release(maxInFlight);
+      long elapsed = System.nanoTime() - start;
+
+      Throwable throwable = failure.get();
+      if (throwable != null) {
+         throw new CacheException(flow + " failed", throwable);
+      }
+      return new Result(flow, maxInFlight, latencies, elapsed);
+   }
+
+   @Override
+   public void close() throws IOException {
+      memcachedClient.shutdown();
+      restClient.close();
+      remoteCacheManager.stop();
+   }
+
+   private static <T> CompletableFuture<T> toCompletableFuture(GetFuture<T> future) {
+      CompletableFuture<T> result = new CompletableFuture<>();
+      future.addListener(completed -> complete(result, future));
+      return result;
+   }
+
+   private static <T> CompletableFuture<T> toCompletableFuture(OperationFuture<T> future) {
+      CompletableFuture<T> result = new CompletableFuture<>();
+      future.addListener(completed -> complete(result, future));
+      return result;
+   }
+
+   /**
+    * Completes from a spymemcached listener, called from its I/O thread once the future is done.
+    */
+   private static <T> void complete(CompletableFuture<T> result, Future<T> future) {
+      try {
+         result.complete(future.get());
+      } catch (ExecutionException e) {
+         result.completeExceptionally(e.getCause());
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         result.completeExceptionally(e);
+      } catch (RuntimeException e) {
+         result.completeExceptionally(e);
+      }
+   }
+
+   /**
+    * Throughput and latency of the flows of a {@link #run(Flow, int, int)}.
+    */
+   public static final class Result {
+      private final Flow flow;
+      private final int maxInFlight;
+      private final Histogram latencies;
+      private final long elapsedNanos;
+
+      Result(Flow flow, int maxInFlight, Histogram latencies, long elapsedNanos) {
+         this.flow = flow;
+         this.maxInFlight = maxInFlight;
+         this.latencies = latencies;
+         this.elapsedNanos = elapsedNanos;
+      }
+
+      public long getFlows() {
+         return latencies.getTotalCount();
+      }
+
+      public double getFlowsPerSecond() {
+         return getFlows() * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(elapsedNanos, 1);
+      }
+
+      /**
+       * Time from starting the write to reading the value back, in microseconds.
+       */
+      public double getLatencyMicros(double percentile) {
+         return latencies.getValueAtPercentile(percentile) / 1e3;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%-20s %6d in flight: %,9.0f flows/sec, p50 %,8.0f us, p99 %,8.0f us",
+               flow, maxInFlight, getFlowsPerSecond(), getLatencyMicros(50), getLatencyMicros(99));
+      }
+   }
+
+   /**
+    * Runs every flow one at a time, as the synchronous demos do, and then pipelined.
+    * <p>
+    * Arguments: flows per run (default 10000), flows in flight (default 256) and REST connections (default 16).
+    */
+   public static void main(String[] args) throws Exception {
+      int flows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+      int maxInFlight = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+      int restConnections = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+      try (AsyncInterop interop = new AsyncInterop("localhost", restConnections)) {
+         // A single flow, composed by the caller
+         String value = interop.start(Flow.HOT_ROD_TO_REST, "BTC", "Bitcoin")
+               .thenCompose(read -> interop.start(Flow.REST_TO_MEMCACHED, "BTC", read + " Cash"))
+               .thenCompose(read -> interop.start(Flow.MEMCACHED_TO_HOT_ROD, "BTC", read.toUpperCase()))
+               .join();
+         System.out.println("BTC went through the three endpoints as '" + value + "'");
+
+         for (Flow flow : Flow.values()) {
+            System.out.println(interop.run(flow, flows, 1));
+            System.out.println(interop.run(flow, flows, maxInFlight));
+         }
+      }
+   }
+}
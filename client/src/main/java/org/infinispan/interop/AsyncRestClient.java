@@ -0,0 +1,238 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpHeaders.AUTHORIZATION;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpPipeliningClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Non-blocking access to <code>/rest/{cache}/{key}</code>.
+ * <p>
+ * All requests share a pool of keep-alive connections served by a few I/O threads, and results are delivered as
+ * {@link CompletableFuture}s, so the number of requests in flight is not bound to the number of threads.
+ * {@link #getAll(String, List, String)} pipelines several GETs on a single connection, and
+ * {@link #postAll(String, Map, ContentType)} several POSTs.
+ * <p>
+ * With a {@link Compression}, bodies over its threshold are compressed before being sent, and compressed values are
+ * decompressed when read, as the {@link CompressionInterceptor} does for the blocking client.
+ */
+public class AsyncRestClient implements Closeable {
+
+   private final HttpHost target;
+   private final String authorization;
+   private final CloseableHttpPipeliningClient httpClient;
+   private final Compression compression;
+
+   public AsyncRestClient(String host, int port, String username, String password, int maxConnections) throws IOReactorException {
+      this(host, port, username, password, maxConnections, null);
+   }
+
+   public AsyncRestClient(String host, int port, String username, String password, int maxConnections, Compression compression) throws IOReactorException {
+      this.compression = compression;
+      this.target = new HttpHost(host, port);
+      this.authorization = "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(UTF_8));
+
+      IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+            .setIoThreadCount(Runtime.getRuntime().availableProcessors())
+            .setSoKeepAlive(true)
+            .setTcpNoDelay(true)
+            .build();
+      PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+      connectionManager.setMaxTotal(maxConnections);
+      connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+      this.httpClient = HttpAsyncClients.createPipelining(connectionManager);
+      this.httpClient.start();
+   }
+
+   /**
+    * Reads an entry, completing with <code>null</code> if it does not exist.
+    */
+   public CompletableFuture<byte[]> get(String cacheName, String key, String accept) {
+      CompletableFuture<byte[]> result = new CompletableFuture<>();
+      httpClient.execute(target, get(path(cacheName, key), accept), new ResultCallback<>(result, this::content));
+      return result;
+   }
+
+   /**
+    * Writes an entry, completing with the response status code.
+    */
+   public CompletableFuture<Integer> post(String cacheName, String key, byte[] body, ContentType contentType) {
+      CompletableFuture<Integer> result = new CompletableFuture<>();
+      httpClient.execute(target, post(path(cacheName, key), body, contentType), new ResultCallback<>(result, AsyncRestClient::status));
+      return result;
+   }
+
+   /**
+    * Removes an entry, completing with the response status code.
+    */
+   public CompletableFuture<Integer> delete(String cacheName, String key) {
+      HttpDelete delete = new HttpDelete(path(cacheName, key));
+      delete.setHeader(AUTHORIZATION, authorization);
+      CompletableFuture<Integer> result = new CompletableFuture<>();
+      httpClient.execute(target, delete, new ResultCallback<>(result, AsyncRestClient::status));
+      return result;
+   }
+
+   /**
+    * Reads several entries sending all the requests on one connection without waiting for each response. The values
+    * are in the order of the keys, <code>null</code> for the missing ones.
+    */
+   public CompletableFuture<List<byte[]>> getAll(String cacheName, List<String> keys, String accept) {
+      List<HttpRequest> requests = new ArrayList<>(keys.size());
+      for (String key : keys) {
+         requests.add(get(path(cacheName, key), accept));
+      }
+      CompletableFuture<List<byte[]>> result = new CompletableFuture<>();
+      httpClient.execute(target, requests, new ResultCallback<>(result, responses -> {
+         List<byte[]> values = new ArrayList<>(responses.size());
+         for (HttpResponse response : responses) {
+            values.add(content(response));
+         }
+         return values;
+      }));
+      return result;
+   }
+
+   /**
+    * Writes several entries sending all the requests on one connection without waiting for each response, completing
+    * with the status codes in the iteration order of the entries. A failed write fails the whole batch.
+    */
+   public CompletableFuture<List<Integer>> postAll(String cacheName, Map<String, byte[]> entries, ContentType contentType) {
+      List<HttpRequest> requests = new ArrayList<>(entries.size());
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+         requests.add(post(path(cacheName, entry.getKey()), entry.getValue(), contentType));
+      }
+      CompletableFuture<List<Integer>> result = new CompletableFuture<>();
+      httpClient.execute(target, requests, new ResultCallback<>(result, responses -> {
+         List<Integer> statuses = new ArrayList<>(responses.size());
+         for (HttpResponse response : responses) {
+            statuses.add(status(response));
+         }
+         return statuses;
+      }));
+      return result;
+   }
+
+   private HttpGet get(String uri, String accept) {
+      HttpGet get = new HttpGet(uri);
+      get.setHeader(AUTHORIZATION, authorization);
+      if (accept != null) {
+         get.setHeader(ACCEPT, accept);
+      }
+      return get;
+   }
+
+   private HttpPost post(String uri, byte[] body, ContentType contentType) {
+      HttpPost post = new HttpPost(uri);
+      post.setHeader(AUTHORIZATION, authorization);
+      if (compression == null) {
+         post.setEntity(new ByteArrayEntity(body, contentType));
+      } else {
+         byte[] compressed = compression.compress(body);
+         ByteArrayEntity entity = new ByteArrayEntity(compressed, contentType);
+         if (Compression.isCompressed(compressed)) {
+            entity.setContentEncoding(compression.getContentEncoding());
+         }
+         post.setEntity(entity);
+      }
+      return post;
+   }
+
+   private static String path(String cacheName, String key) {
+      return "/rest/" + cacheName + "/" + key;
+   }
+
+   private byte[] content(HttpResponse response) throws IOException {
+      int status = response.getStatusLine().getStatusCode();
+      if (status == HttpStatus.SC_NOT_FOUND) {
+         EntityUtils.consume(response.getEntity());
+         return null;
+      }
+      checkStatus(response);
+      byte[] content = EntityUtils.toByteArray(response.getEntity());
+      return compression == null ? content : Compression.decompress(content);
+   }
+
+   private static Integer status(HttpResponse response) throws IOException {
+      checkStatus(response);
+      EntityUtils.consume(response.getEntity());
+      return response.getStatusLine().getStatusCode();
+   }
+
+   private static void checkStatus(HttpResponse response) throws IOException {
+      int status = response.getStatusLine().getStatusCode();
+      if (status >= 300) {
+         EntityUtils.consume(response.getEntity());
+         throw new HttpResponseException(status, response.getStatusLine().getReasonPhrase());
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      httpClient.close();
+   }
+
+   @FunctionalInterface
+   private interface ResponseHandler<R, T> {
+      T handle(R response) throws IOException;
+   }
+
+   /**
+    * Completes a {@link CompletableFuture} from the I/O thread that received the response.
+    */
+   private static final class ResultCallback<R, T> implements FutureCallback<R> {
+      private final CompletableFuture<T> result;
+      private final ResponseHandler<R, T> handler;
+
+      ResultCallback(CompletableFuture<T> result, ResponseHandler<R, T> handler) {
+         this.result = result;
+         this.handler = handler;
+      }
+
+      @Override
+      public void completed(R response) {
+         try {
+            result.complete(handler.handle(response));
+         } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+         }
+      }
+
+      @Override
+      public void failed(Exception e) {
+         result.completeExceptionally(e);
+      }
+
+      @Override
+      public void cancelled() {
+         result.cancel(false);
+      }
+   }
+}
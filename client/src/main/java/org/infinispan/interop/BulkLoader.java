@@ -0,0 +1,163 @@
+package org.infinispan.interop;
+
+import static org.infinispan.interop.Utils.registerSchema;
+import static org.infinispan.interop.Utils.withRouting;
+
+import java.net.SocketAddress;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.Configuration;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.client.hotrod.marshall.ProtoStreamMarshaller;
+import org.infinispan.commons.CacheException;
+
+/**
+ * Loads entries with Hot Rod in batches of <code>batchSize</code> sent with <code>putAllAsync</code>, keeping at most
+ * <code>maxInFlight</code> batches waiting for a server response, instead of paying one round trip per key.
+ * <p>
+ * With key affinity, entries are batched by the server owning their key, as given by the {@link KeyAffinity} of the
+ * cache, so that each batch is a single request to its owner instead of being split by the client over the cluster.
+ */
+public class BulkLoader<K, V> {
+
+   private final RemoteCache<K, V> remoteCache;
+   private final int batchSize;
+   private final int maxInFlight;
+   private final KeyAffinity<K> keyAffinity;
+
+   public BulkLoader(RemoteCache<K, V> remoteCache, int batchSize, int maxInFlight) {
+      this(remoteCache, batchSize, maxInFlight, false);
+   }
+
+   public BulkLoader(RemoteCache<K, V> remoteCache, int batchSize, int maxInFlight, boolean keyAffinity) {
+      if (batchSize < 1 || maxInFlight < 1) {
+         throw new IllegalArgumentException("batchSize and maxInFlight must be positive");
+      }
+      this.remoteCache = remoteCache;
+      this.batchSize = batchSize;
+      this.maxInFlight = maxInFlight;
+      this.keyAffinity = keyAffinity ? new KeyAffinity<>(remoteCache) : null;
+   }
+
+   /**
+    * Writes all the entries, blocking until every batch has been acknowledged by the server.
+    *
+    * @throws CacheException if any of the batches failed; batches already sent are not rolled back.
+    */
+   public Result load(Iterator<? extends Map.Entry<? extends K, ? extends V>> entries) throws InterruptedException {
+      Semaphore inFlight = new Semaphore(maxInFlight);
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      long start = System.nanoTime();
+      long count = 0;
+
+      // A single batch, under a null owner, without key affinity
+      Map<SocketAddress, Map<K, V>> batches = new HashMap<>();
+      while (entries.hasNext()) {
+         Map.Entry<? extends K, ? extends V> entry = entries.next();
+         SocketAddress owner = keyAffinity == null ? null : keyAffinity.owner(entry.getKey());
+         Map<K, V> batch = batches.computeIfAbsent(owner, ignored -> new HashMap<>(batchSize * 2));
+         batch.put(entry.getKey(), entry.getValue());
+         if (batch.size() == batchSize) {
+            count += send(batch, inFlight, failure);
+            batches.remove(owner);
+         }
+      }
+      for (Map<K, V> batch : batches.values()) {
+         count += send(batch, inFlight, failure);
+      }
+
+      // Wait for the outstanding batches
+      inFlight.acquire(maxInFlight);
+      inFlight.release(maxInFlight);
+      checkFailure(failure);
+      return new Result(count, System.nanoTime() - start);
+   }
+
+   private int send(Map<K, V> batch, Semaphore inFlight, AtomicReference<Throwable> failure) throws InterruptedException {
+      inFlight.acquire();
+      checkFailure(failure);
+      remoteCache.putAllAsync(batch).whenComplete((ignored, throwable) -> {
+         if (throwable != null) {
+            failure.compareAndSet(null, throwable);
+         }
+         inFlight.release();
+      });
+      return batch.size();
+   }
+
+   private static void checkFailure(AtomicReference<Throwable> failure) {
+      Throwable throwable = failure.get();
+      if (throwable != null) {
+         throw new CacheException("Bulk load failed", throwable);
+      }
+   }
+
+   /**
+    * Number of records written and the time it took.
+    */
+   public static final class Result {
+      private final long records;
+      private final long elapsedNanos;
+
+      Result(long records, long elapsedNanos) {
+         this.records = records;
+         this.elapsedNanos = elapsedNanos;
+      }
+
+      public long getRecords() {
+         return records;
+      }
+
+      public long getElapsed(TimeUnit unit) {
+         return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+      }
+
+      public double getRecordsPerSecond() {
+         return records * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(elapsedNanos, 1);
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%d records in %d ms (%.0f records/sec)", records, getElapsed(TimeUnit.MILLISECONDS), getRecordsPerSecond());
+      }
+   }
+
+   /**
+    * Loads generated {@link CryptoCurrency} entries into the 'indexed' cache.
+    * <p>
+    * Arguments: number of entries (default 100000), batch size (default 1000), batches in flight (default 4) and
+    * whether to batch entries by owner (default false). The client is configured by {@link Utils#withRouting}.
+    */
+   public static void main(String[] args) throws Exception {
+      int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+      int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+      int maxInFlight = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+      boolean keyAffinity = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+      Configuration configuration = withRouting(new ConfigurationBuilder().marshaller(new ProtoStreamMarshaller())).build();
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(configuration);
+      registerSchema(remoteCacheManager);
+
+      RemoteCache<String, CryptoCurrency> remoteCache = remoteCacheManager.getCache("indexed");
+
+      Iterator<Map.Entry<String, CryptoCurrency>> generated = IntStream.range(0, entries)
+            .mapToObj(i -> (Map.Entry<String, CryptoCurrency>) new SimpleImmutableEntry<>("CUR-" + i, new CryptoCurrency("Currency " + i, i)))
+            .iterator();
+
+      Result result = new BulkLoader<>(remoteCache, batchSize, maxInFlight, keyAffinity).load(generated);
+      System.out.println("Loaded " + result + " with batches of " + batchSize + " and " + maxInFlight + " in flight"
+            + (keyAffinity ? ", by owner" : ""));
+      System.out.println("Cache size after bulk load: " + remoteCache.size());
+
+      remoteCacheManager.stop();
+   }
+}
@@ -0,0 +1,495 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.infinispan.client.hotrod.CacheTopologyInfo;
+import org.infinispan.client.hotrod.DataFormat;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.commons.CacheException;
+import org.infinispan.commons.dataconversion.MediaType;
+import org.infinispan.commons.marshall.IdentityMarshaller;
+import org.infinispan.commons.util.CloseableIterator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.util.BufferRecyclers;
+
+/**
+ * Dumps a cache to a file and loads it back, to copy a cache to another cluster or to warm it up after a restart.
+ * <p>
+ * Entries are read with server side iteration, one iterator per group of segments owned by the same server, in
+ * parallel, and loaded with the {@link BulkLoader}. Keys and values are transferred as bytes, in the format requested
+ * from the server, and never unmarshalled by the client. The file is written and read through memory mapped windows
+ * of {@value #WINDOW_SIZE} bytes, in one of two formats:
+ * <ul>
+ * <li>binary: a header with the media types of the keys and values followed by length prefixed keys and values. Any
+ * cache can be dumped, in any format the server converts its entries to, and the same format is used to load them.</li>
+ * <li>NDJSON: one <code>{"key":"...","value":{...}}</code> document per line, with keys as text and values as JSON,
+ * readable by other tools. It is only suitable for caches whose keys are strings and whose values convert to JSON.</li>
+ * </ul>
+ */
+public class CacheDump {
+
+   static final int WINDOW_SIZE = 64 << 20;
+
+   private static final byte[] MAGIC = "ISPNDUMP".getBytes(US_ASCII);
+   private static final int VERSION = 1;
+   private static final JsonFactory JSON_FACTORY = new JsonFactory();
+   private static final List<Map.Entry<Object, Object>> END = Collections.emptyList();
+
+   // An NDJSON line is KEY_PREFIX, the escaped key, VALUE_PREFIX, the JSON value and SUFFIX
+   private static final byte[] KEY_PREFIX = "{\"key\":\"".getBytes(UTF_8);
+   private static final byte[] VALUE_PREFIX = "\",\"value\":".getBytes(UTF_8);
+   private static final byte[] SUFFIX = "}\n".getBytes(UTF_8);
+
+   private final int parallelism;
+   private final int batchSize;
+
+   public CacheDump(int parallelism, int batchSize) {
+      if (parallelism < 1 || batchSize < 1) {
+         throw new IllegalArgumentException("parallelism and batchSize must be positive");
+      }
+      this.parallelism = parallelism;
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * Dumps the entries as length prefixed keys and values converted to <code>mediaType</code>, e.g. the storage media
+    * type of the cache, so that the server does not convert them.
+    *
+    * @return the number of entries written.
+    */
+   public long exportBinary(RemoteCache<?, ?> remoteCache, MediaType mediaType, Path file) throws IOException, InterruptedException {
+      try (MappedOutput out = new MappedOutput(file)) {
+         out.put(MAGIC);
+         out.putInt(VERSION);
+         out.putString(mediaType.toString());
+         out.putString(mediaType.toString());
+         return export(raw(remoteCache, mediaType, mediaType), (key, value) -> {
+            out.putInt(key.length);
+            out.put(key);
+            out.putInt(value.length);
+            out.put(value);
+         });
+      }
+   }
+
+   /**
+    * Dumps the entries as newline delimited JSON documents.
+    *
+    * @return the number of entries written.
+    */
+   public long exportJson(RemoteCache<?, ?> remoteCache, Path file) throws IOException, InterruptedException {
+      JsonStringEncoder encoder = BufferRecyclers.getJsonStringEncoder();
+      try (MappedOutput out = new MappedOutput(file)) {
+         return export(raw(remoteCache, MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON), (key, value) -> {
+            out.put(KEY_PREFIX);
+            out.put(encoder.quoteAsUTF8(new String(key, UTF_8)));
+            out.put(VALUE_PREFIX);
+            out.put(value);
+            out.put(SUFFIX);
+         });
+      }
+   }
+
+   /**
+    * Loads a file written by either export into the cache, in batches of <code>batchSize</code> entries with at most
+    * <code>maxInFlight</code> batches waiting for the server.
+    */
+   public BulkLoader.Result load(RemoteCache<?, ?> remoteCache, Path file, int maxInFlight) throws IOException, InterruptedException {
+      try (MappedInput in = new MappedInput(file)) {
+         Iterator<Map.Entry<byte[], byte[]>> entries;
+         RemoteCache<byte[], byte[]> raw;
+         if (in.startsWith(MAGIC)) {
+            in.skip(MAGIC.length);
+            int version = in.getInt();
+            if (version != VERSION) {
+               throw new IOException("Unsupported dump version " + version);
+            }
+            raw = raw(remoteCache, MediaType.fromString(in.getString()), MediaType.fromString(in.getString()));
+            entries = new Records(in) {
+               @Override
+               Map.Entry<byte[], byte[]> read() throws IOException {
+                  byte[] key = in.get(in.getInt());
+                  return new SimpleImmutableEntry<>(key, in.get(in.getInt()));
+               }
+            };
+         } else {
+            raw = raw(remoteCache, MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON);
+            entries = new Records(in) {
+               @Override
+               Map.Entry<byte[], byte[]> read() throws IOException {
+                  return parseLine(in.getLine());
+               }
+            };
+         }
+         return new BulkLoader<>(raw, batchSize, maxInFlight).load(entries);
+      } catch (UncheckedIOException e) {
+         throw e.getCause();
+      }
+   }
+
+   /**
+    * A view of the cache exchanging keys and values as bytes in the given formats.
+    */
+   private static RemoteCache<byte[], byte[]> raw(RemoteCache<?, ?> remoteCache, MediaType keyType, MediaType valueType) {
+      return remoteCache.withDataFormat(DataFormat.builder()
+            .keyType(keyType).keyMarshaller(IdentityMarshaller.INSTANCE)
+            .valueType(valueType).valueMarshaller(IdentityMarshaller.INSTANCE)
+            .build());
+   }
+
+   /**
+    * Iterates over each group of segments in its own thread, handing batches of entries to the calling thread, which
+    * writes them.
+    */
+   private long export(RemoteCache<byte[], byte[]> raw, RecordWriter writer) throws IOException, InterruptedException {
+      List<Set<Integer>> groups = segmentGroups(raw.getCacheTopologyInfo());
+      // Room for a few batches per iterator, which blocks the iterators when the file is written slower than read
+      BlockingQueue<List<Map.Entry<Object, Object>>> batches = new ArrayBlockingQueue<>(groups.size() * 4);
+      ExecutorService executor = Executors.newFixedThreadPool(groups.size());
+      try {
+         List<Future<?>> iterations = new ArrayList<>(groups.size());
+         for (Set<Integer> segments : groups) {
+            iterations.add(executor.submit(() -> {
+               try (CloseableIterator<Map.Entry<Object, Object>> iterator = raw.retrieveEntries(null, segments, batchSize)) {
+                  List<Map.Entry<Object, Object>> batch = new ArrayList<>(batchSize);
+                  while (iterator.hasNext()) {
+                     batch.add(iterator.next());
+                     if (batch.size() == batchSize) {
+                        batches.put(batch);
+                        batch = new ArrayList<>(batchSize);
+                     }
+                  }
+                  if (!batch.isEmpty()) {
+                     batches.put(batch);
+                  }
+               } finally {
+                  batches.put(END);
+               }
+               return null;
+            }));
+         }
+
+         long count = 0;
+         for (int finished = 0; finished < groups.size(); ) {
+            List<Map.Entry<Object, Object>> batch = batches.take();
+            if (batch == END) {
+               finished++;
+            }
+            for (Map.Entry<Object, Object> entry : batch) {
+               writer.write((byte[]) entry.getKey(), (byte[]) entry.getValue());
+            }
+            count += batch.size();
+         }
+         for (Future<?> iteration : iterations) {
+            iteration.get();
+         }
+         return count;
+      } catch (ExecutionException e) {
+         throw new CacheException("Export failed", e.getCause());
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Splits the segments in up to <code>parallelism</code> groups, each one owned by a single server, so that every
+    * iterator reads the entries of one server. Returns a single group with all the segments when the client does not
+    * know the topology.
+    */
+   private List<Set<Integer>> segmentGroups(CacheTopologyInfo topology) {
+      Map<SocketAddress, Set<Integer>> segmentsPerServer = topology.getSegmentsPerServer();
+      if (topology.getNumSegments() <= 0 || segmentsPerServer.isEmpty()) {
+         return Collections.singletonList(null);
+      }
+      int groupsPerServer = Math.max(1, parallelism / segmentsPerServer.size());
+      Set<Integer> assigned = new HashSet<>();
+      List<Set<Integer>> groups = new ArrayList<>();
+      for (Set<Integer> owned : segmentsPerServer.values()) {
+         List<Set<Integer>> serverGroups = new ArrayList<>(groupsPerServer);
+         for (int i = 0; i < groupsPerServer; i++) {
+            serverGroups.add(new HashSet<>());
+         }
+         int next = 0;
+         for (Integer segment : owned) {
+            // Segments have several owners, each one is read from the first of them
+            if (assigned.add(segment)) {
+               serverGroups.get(next++ % groupsPerServer).add(segment);
+            }
+         }
+         serverGroups.removeIf(Set::isEmpty);
+         groups.addAll(serverGroups);
+      }
+      return groups;
+   }
+
+   static Map.Entry<byte[], byte[]> parseLine(byte[] line) throws IOException {
+      try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+         String key = null;
+         byte[] value = null;
+         if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Not a dump entry: " + new String(line, UTF_8));
+         }
+         while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("key".equals(field)) {
+               key = parser.getText();
+            } else if ("value".equals(field)) {
+               // The value is kept as the bytes of the document, the server parses it
+               int start = (int) parser.getTokenLocation().getByteOffset();
+               parser.skipChildren();
+               value = Arrays.copyOfRange(line, start, (int) parser.getCurrentLocation().getByteOffset());
+            } else {
+               parser.skipChildren();
+            }
+         }
+         if (key == null || value == null) {
+            throw new IOException("Not a dump entry: " + new String(line, UTF_8));
+         }
+         return new SimpleImmutableEntry<>(key.getBytes(UTF_8), value);
+      }
+   }
+
+   @FunctionalInterface
+   private interface RecordWriter {
+      void write(byte[] key, byte[] value) throws IOException;
+   }
+
+   private abstract static class Records implements Iterator<Map.Entry<byte[], byte[]>> {
+      private final MappedInput in;
+
+      Records(MappedInput in) {
+         this.in = in;
+      }
+
+      abstract Map.Entry<byte[], byte[]> read() throws IOException;
+
+      @Override
+      public boolean hasNext() {
+         return in.hasRemaining();
+      }
+
+      @Override
+      public Map.Entry<byte[], byte[]> next() {
+         if (!hasNext()) {
+            throw new NoSuchElementException();
+         }
+         try {
+            return read();
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+   }
+
+   /**
+    * Sequential writes to a file through a memory mapped window, moved forward as it fills up. The file is truncated to
+    * the bytes written when closed.
+    */
+   private static final class MappedOutput implements Closeable {
+      private final FileChannel channel;
+      private MappedByteBuffer window;
+      private long windowStart;
+
+      MappedOutput(Path file) throws IOException {
+         channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+               StandardOpenOption.READ, StandardOpenOption.WRITE);
+         window = channel.map(FileChannel.MapMode.READ_WRITE, 0, WINDOW_SIZE);
+      }
+
+      void putInt(int value) throws IOException {
+         ensure(Integer.BYTES);
+         window.putInt(value);
+      }
+
+      void put(byte[] bytes) throws IOException {
+         ensure(bytes.length);
+         window.put(bytes);
+      }
+
+      void putString(String value) throws IOException {
+         byte[] bytes = value.getBytes(UTF_8);
+         putInt(bytes.length);
+         put(bytes);
+      }
+
+      private void ensure(int length) throws IOException {
+         if (window.remaining() < length) {
+            window.force();
+            windowStart += window.position();
+            window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WINDOW_SIZE, length));
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         try {
+            window.force();
+            channel.truncate(windowStart + window.position());
+         } finally {
+            channel.close();
+         }
+      }
+   }
+
+   /**
+    * Sequential reads of a file through a memory mapped window, moved forward when a record does not fit in it.
+    */
+   private static final class MappedInput implements Closeable {
+      private final FileChannel channel;
+      private final long size;
+      private MappedByteBuffer window;
+      private long windowStart;
+
+      MappedInput(Path file) throws IOException {
+         channel = FileChannel.open(file, StandardOpenOption.READ);
+         size = channel.size();
+         window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW_SIZE, size));
+      }
+
+      boolean hasRemaining() {
+         return windowStart + window.position() < size;
+      }
+
+      boolean startsWith(byte[] prefix) {
+         if (window.remaining() < prefix.length) {
+            return false;
+         }
+         for (int i = 0; i < prefix.length; i++) {
+            if (window.get(window.position() + i) != prefix[i]) {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      void skip(int length) throws IOException {
+         ensure(length);
+         window.position(window.position() + length);
+      }
+
+      int getInt() throws IOException {
+         ensure(Integer.BYTES);
+         return window.getInt();
+      }
+
+      byte[] get(int length) throws IOException {
+         ensure(length);
+         byte[] bytes = new byte[length];
+         window.get(bytes);
+         return bytes;
+      }
+
+      String getString() throws IOException {
+         return new String(get(getInt()), UTF_8);
+      }
+
+      /**
+       * The bytes up to the next newline or the end of the file, without the newline.
+       */
+      byte[] getLine() throws IOException {
+         int length = 0;
+         while (true) {
+            for (int i = window.position() + length; i < window.limit(); i++, length++) {
+               if (window.get(i) == '\n') {
+                  byte[] line = get(length);
+                  window.get();
+                  return line;
+               }
+            }
+            if (windowStart + window.limit() == size) {
+               return get(length);
+            }
+            // The line goes past the window, which is moved to start at the line and grown to hold it
+            remap(Math.max(WINDOW_SIZE, length * 2L));
+         }
+      }
+
+      private void ensure(int length) throws IOException {
+         if (window.remaining() < length) {
+            if (windowStart + window.position() + length > size) {
+               throw new EOFException("Truncated dump");
+            }
+            remap(Math.max(WINDOW_SIZE, length));
+         }
+      }
+
+      private void remap(long length) throws IOException {
+         windowStart += window.position();
+         window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(length, size - windowStart));
+      }
+
+      @Override
+      public void close() throws IOException {
+         channel.close();
+      }
+   }
+
+   /**
+    * Arguments:
+    * <ul>
+    * <li><code>export &lt;cache&gt; &lt;file&gt; [format] [parallelism] [batch size]</code>: the format is
+    * <code>ndjson</code> or the media type of a binary dump (default <code>application/x-jboss-marshalling</code>),
+    * parallelism defaults to 4 and batch size to 1000.</li>
+    * <li><code>import &lt;cache&gt; &lt;file&gt; [batch size] [batches in flight]</code>: defaults to 1000 and 4.</li>
+    * </ul>
+    */
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3) {
+         System.err.println("Usage: export <cache> <file> [ndjson|<media type>] [parallelism] [batch size]");
+         System.err.println("       import <cache> <file> [batch size] [batches in flight]");
+         System.exit(1);
+      }
+      Path file = Paths.get(args[2]);
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager();
+      try {
+         RemoteCache<?, ?> remoteCache = remoteCacheManager.getCache(args[1]);
+         if ("export".equals(args[0])) {
+            String format = args.length > 3 ? args[3] : MediaType.APPLICATION_JBOSS_MARSHALLING_TYPE;
+            CacheDump dump = new CacheDump(args.length > 4 ? Integer.parseInt(args[4]) : 4, args.length > 5 ? Integer.parseInt(args[5]) : 1000);
+            long start = System.nanoTime();
+            long count = "ndjson".equals(format) ? dump.exportJson(remoteCache, file) : dump.exportBinary(remoteCache, MediaType.fromString(format), file);
+            System.out.printf("Exported %d entries of '%s' to %s in %d ms%n", count, args[1], file, (System.nanoTime() - start) / 1_000_000);
+         } else {
+            CacheDump dump = new CacheDump(1, args.length > 3 ? Integer.parseInt(args[3]) : 1000);
+            BulkLoader.Result result = dump.load(remoteCache, file, args.length > 4 ? Integer.parseInt(args[4]) : 4);
+            System.out.println("Imported " + result + " into '" + args[1] + "'");
+         }
+      } finally {
+         remoteCacheManager.stop();
+      }
+   }
+}
@@ -0,0 +1,86 @@
+package org.infinispan.interop;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+import org.infinispan.interop.VersionedCache.Backoff;
+import org.infinispan.interop.VersionedCache.Versioned;
+
+/**
+ * Locks held by writing an entry in a cache, from any endpoint, as the pessimistic counterpart of
+ * {@link VersionedCache#update(String, UnaryOperator, Backoff)}: only the owner of the lock of a key reads and writes
+ * it, so its writes never conflict, but every other writer waits for the lock instead of retrying its update.
+ * <p>
+ * The lock of a key is the entry <code>key.lock</code>, written if absent and removed, if it is still the one written,
+ * when the lock is released. It expires after the lease, so that the lock of an owner that stopped before releasing it
+ * is eventually released too, at the cost of letting another writer in if an owner holds it for longer than the lease.
+ * Lock entries are JSON documents naming their owner. Each instance is a different owner, and is not reentrant.
+ */
+public final class CacheLock {
+
+   static final String SUFFIX = ".lock";
+
+   private final VersionedCache<String> locks;
+   private final Expiration lease;
+   private final Backoff backoff;
+   private final String owner = "{\"owner\":\"" + UUID.randomUUID() + "\"}";
+
+   /**
+    * Locks stored in a cache of JSON documents, e.g. the 'json-cache', expiring after the lease.
+    */
+   public CacheLock(VersionedCache<String> locks, Expiration lease, Backoff backoff) {
+      this.locks = locks;
+      this.lease = lease;
+      this.backoff = backoff;
+   }
+
+   /**
+    * Waits until the lock of the key is free and takes it.
+    *
+    * @return the number of attempts, 1 when the lock was free
+    */
+   public int lock(String key) throws IOException {
+      for (int attempts = 1; ; attempts++) {
+         if (locks.putIfAbsent(key + SUFFIX, owner, lease)) {
+            return attempts;
+         }
+         backoff.pause(attempts);
+      }
+   }
+
+   /**
+    * Releases the lock of the key.
+    *
+    * @return false when this owner no longer held it, because the lease expired
+    */
+   public boolean unlock(String key) throws IOException {
+      Versioned<String> lock = locks.get(key + SUFFIX);
+      return lock != null && owner.equals(lock.getValue()) && locks.remove(key + SUFFIX, lock);
+   }
+
+   /**
+    * Applies the function to the value of the key while holding its lock, or to null when the key is not in the cache.
+    *
+    * @return the number of attempts to take the lock
+    * @throws IllegalStateException when the key was written meanwhile by a writer not holding the lock, so that the
+    *                               update, applied to null, is not written over that value
+    */
+   public <V> int update(VersionedCache<V> cache, String key, UnaryOperator<V> function) throws IOException {
+      int attempts = lock(key);
+      try {
+         Versioned<V> current = cache.get(key);
+         V value = function.apply(current == null ? null : current.getValue());
+         if (current == null) {
+            if (!cache.putIfAbsent(key, value, Expiration.CACHE_DEFAULT)) {
+               throw new IllegalStateException("'" + key + "' was written without holding its lock");
+            }
+         } else {
+            cache.put(key, value);
+         }
+         return attempts;
+      } finally {
+         unlock(key);
+      }
+   }
+}
@@ -0,0 +1,185 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Converts text between charsets in fixed size chunks, so that a payload of any size is transcoded with a few kilobytes
+ * of buffers, borrowed from a pool, instead of decoding the whole payload into a String and encoding it again.
+ * <p>
+ * {@link #entity(InputStream, Charset, String)} sends a legacy encoded stream to REST as UTF-8, the charset the server
+ * stores, so the server does not transcode it either. {@link #transcode(InputStream, Charset, OutputStream, Charset)}
+ * converts a response body as it is read.
+ */
+public final class CharsetTranscoder {
+
+   static final int CHUNK_SIZE = 8192;
+
+   private static final Queue<Buffers> POOL = new ConcurrentLinkedQueue<>();
+
+   private CharsetTranscoder() {
+   }
+
+   /**
+    * Copies <code>in</code>, encoded with <code>from</code>, to <code>out</code> encoded with <code>to</code>. Malformed
+    * and unmappable input is replaced. Neither stream is closed.
+    *
+    * @return the number of bytes written.
+    */
+   public static long transcode(InputStream in, Charset from, OutputStream out, Charset to) throws IOException {
+      CharsetDecoder decoder = from.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      CharsetEncoder encoder = to.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      Buffers buffers = borrow();
+      try {
+         ByteBuffer input = buffers.input;
+         CharBuffer chars = buffers.chars;
+         ByteBuffer output = buffers.output;
+         long written = 0;
+         boolean endOfInput = false;
+         CoderResult result;
+         while (!endOfInput) {
+            int read = in.read(input.array(), input.position(), input.remaining());
+            if (read < 0) {
+               endOfInput = true;
+            } else {
+               input.position(input.position() + read);
+            }
+            input.flip();
+            do {
+               result = decoder.decode(input, chars, endOfInput);
+               check(result);
+               written += drain(encoder, chars, output, out, false);
+            } while (result.isOverflow());
+            // The bytes of a character split between two reads stay in the buffer until the next one
+            input.compact();
+         }
+         do {
+            result = decoder.flush(chars);
+            check(result);
+            written += drain(encoder, chars, output, out, false);
+         } while (result.isOverflow());
+         return written + drain(encoder, chars, output, out, true);
+      } finally {
+         release(buffers);
+      }
+   }
+
+   /**
+    * A chunked request body with the content of <code>in</code> converted to UTF-8 while it is sent. The stream is
+    * closed once it has been sent.
+    */
+   public static AbstractHttpEntity entity(InputStream in, Charset charset, String mimeType) {
+      AbstractHttpEntity entity = new AbstractHttpEntity() {
+         private boolean consumed;
+
+         @Override
+         public boolean isRepeatable() {
+            return false;
+         }
+
+         @Override
+         public long getContentLength() {
+            return -1;
+         }
+
+         @Override
+         public InputStream getContent() {
+            throw new UnsupportedOperationException("The content is only available through writeTo");
+         }
+
+         @Override
+         public void writeTo(OutputStream out) throws IOException {
+            if (consumed) {
+               throw new IllegalStateException("The content has already been sent");
+            }
+            consumed = true;
+            try (InputStream content = in) {
+               transcode(content, charset, out, UTF_8);
+            }
+         }
+
+         @Override
+         public boolean isStreaming() {
+            return !consumed;
+         }
+      };
+      entity.setChunked(true);
+      entity.setContentType(ContentType.create(mimeType, UTF_8).toString());
+      return entity;
+   }
+
+   /**
+    * Encodes all the decoded chars and writes them.
+    */
+   private static long drain(CharsetEncoder encoder, CharBuffer chars, ByteBuffer output, OutputStream out, boolean endOfInput) throws IOException {
+      long written = 0;
+      CoderResult result;
+      chars.flip();
+      do {
+         result = encoder.encode(chars, output, endOfInput);
+         check(result);
+         written += write(output, out);
+      } while (result.isOverflow());
+      chars.compact();
+      if (endOfInput) {
+         do {
+            result = encoder.flush(output);
+            check(result);
+            written += write(output, out);
+         } while (result.isOverflow());
+      }
+      return written;
+   }
+
+   private static int write(ByteBuffer output, OutputStream out) throws IOException {
+      int length = output.position();
+      out.write(output.array(), 0, length);
+      output.clear();
+      return length;
+   }
+
+   private static void check(CoderResult result) throws CharacterCodingException {
+      if (result.isError()) {
+         result.throwException();
+      }
+   }
+
+   private static Buffers borrow() {
+      Buffers buffers = POOL.poll();
+      return buffers == null ? new Buffers() : buffers;
+   }
+
+   private static void release(Buffers buffers) {
+      buffers.input.clear();
+      buffers.chars.clear();
+      buffers.output.clear();
+      POOL.offer(buffers);
+   }
+
+   private static final class Buffers {
+      final ByteBuffer input = ByteBuffer.allocate(CHUNK_SIZE);
+      final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+      // Room for a chunk of chars in most charsets, so that encoding seldom overflows
+      final ByteBuffer output = ByteBuffer.allocate(CHUNK_SIZE * 4);
+   }
+}
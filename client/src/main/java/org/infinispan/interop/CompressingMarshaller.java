@@ -0,0 +1,83 @@
+package org.infinispan.interop;
+
+import java.io.IOException;
+
+import org.infinispan.commons.dataconversion.MediaType;
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.commons.io.ByteBufferImpl;
+import org.infinispan.commons.marshall.BufferSizePredictor;
+import org.infinispan.commons.marshall.Marshaller;
+
+/**
+ * Hot Rod marshaller compressing what another marshaller produces, e.g. the <code>UTF8StringMarshaller</code>, the
+ * <code>ProtoStreamMarshaller</code> or the default <code>GenericJBossMarshaller</code>, with a {@link Compression}.
+ * Reads accept both compressed and uncompressed values, so caches written before compression was enabled, or by
+ * clients without it, stay readable.
+ * <p>
+ * Keys go through the marshaller too, but are normally far below the threshold and sent as they are. The server only
+ * sees the compressed bytes: see {@link Compression} for the caches where that is interoperable. A compressing client
+ * can still register schemas with the {@link #getDelegate() wrapped} <code>ProtoStreamMarshaller</code>, but indexed
+ * caches, where the server parses every value, cannot store compressed ones.
+ */
+public final class CompressingMarshaller implements Marshaller {
+
+   private final Marshaller delegate;
+   private final Compression compression;
+
+   public CompressingMarshaller(Marshaller delegate, Compression compression) {
+      this.delegate = delegate;
+      this.compression = compression;
+   }
+
+   /**
+    * The marshaller of the uncompressed values.
+    */
+   public Marshaller getDelegate() {
+      return delegate;
+   }
+
+   @Override
+   public byte[] objectToByteBuffer(Object obj, int estimatedSize) throws IOException, InterruptedException {
+      return compression.compress(delegate.objectToByteBuffer(obj, estimatedSize));
+   }
+
+   @Override
+   public byte[] objectToByteBuffer(Object obj) throws IOException, InterruptedException {
+      return compression.compress(delegate.objectToByteBuffer(obj));
+   }
+
+   @Override
+   public ByteBuffer objectToBuffer(Object o) throws IOException, InterruptedException {
+      ByteBuffer buffer = delegate.objectToBuffer(o);
+      byte[] compressed = compression.compress(buffer.getBuf(), buffer.getOffset(), buffer.getLength());
+      return new ByteBufferImpl(compressed, 0, compressed.length);
+   }
+
+   @Override
+   public Object objectFromByteBuffer(byte[] buf) throws IOException, ClassNotFoundException {
+      return objectFromByteBuffer(buf, 0, buf.length);
+   }
+
+   @Override
+   public Object objectFromByteBuffer(byte[] buf, int offset, int length) throws IOException, ClassNotFoundException {
+      if (!Compression.isCompressed(buf, offset, length)) {
+         return delegate.objectFromByteBuffer(buf, offset, length);
+      }
+      return delegate.objectFromByteBuffer(Compression.decompress(buf, offset, length));
+   }
+
+   @Override
+   public boolean isMarshallable(Object o) throws Exception {
+      return delegate.isMarshallable(o);
+   }
+
+   @Override
+   public BufferSizePredictor getBufferSizePredictor(Object o) {
+      return delegate.getBufferSizePredictor(o);
+   }
+
+   @Override
+   public MediaType mediaType() {
+      return delegate.mediaType();
+   }
+}
@@ -0,0 +1,54 @@
+package org.infinispan.interop;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.Transcoder;
+
+/**
+ * Memcached transcoder compressing the values of another transcoder, e.g. {@link JsonTranscoder#text()}, with a
+ * {@link Compression}, in the same format as the {@link CompressingMarshaller} of Hot Rod. Flags are passed through
+ * unchanged, and uncompressed values are read as they are.
+ * <p>
+ * The default <code>SerializingTranscoder</code> gzips large values itself, marking them with a flag the other
+ * endpoints ignore; wrap it only with its compression threshold raised above the largest value.
+ */
+public final class CompressingTranscoder<T> implements Transcoder<T> {
+
+   private final Transcoder<T> delegate;
+   private final Compression compression;
+
+   public CompressingTranscoder(Transcoder<T> delegate, Compression compression) {
+      this.delegate = delegate;
+      this.compression = compression;
+   }
+
+   @Override
+   public boolean asyncDecode(CachedData data) {
+      return delegate.asyncDecode(data);
+   }
+
+   @Override
+   public CachedData encode(T value) {
+      CachedData data = delegate.encode(value);
+      return new CachedData(data.getFlags(), compression.compress(data.getData()), getMaxSize());
+   }
+
+   @Override
+   public T decode(CachedData data) {
+      if (!Compression.isCompressed(data.getData())) {
+         return delegate.decode(data);
+      }
+      try {
+         return delegate.decode(new CachedData(data.getFlags(), Compression.decompress(data.getData()), Integer.MAX_VALUE));
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   @Override
+   public int getMaxSize() {
+      return delegate.getMaxSize();
+   }
+}
@@ -0,0 +1,253 @@
+package org.infinispan.interop;
+
+import java.io.IOException;
+
+import com.github.luben.zstd.Zstd;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Compression of the values sent to and read from the server, applied by the clients of every endpoint so that a value
+ * compressed by one of them is decompressed by the others: the {@link CompressingMarshaller} for Hot Rod, the
+ * {@link CompressingTranscoder} for memcached, and the {@link CompressionInterceptor} and {@link AsyncRestClient} for
+ * REST.
+ * <p>
+ * Values smaller than the threshold, and values that do not get smaller, are sent as they are. Compressed values are
+ * framed with a header, so readers recognise them whichever codec or threshold the writer used, and pass any other
+ * value through unchanged:
+ * <pre>
+ * 0xC0 | codec id (1 byte) | uncompressed length (4 bytes, big endian) | compressed bytes
+ * </pre>
+ * 0xC0 never starts a UTF-8 string nor a protobuf or JBoss Marshalling payload. The server stores the frame as it
+ * is, so compressed values are only readable from the other endpoints in caches the server does not have to parse: the
+ * 'string-cache' and the 'json-cache', read in their storage format. Indexed caches and caches converting values to
+ * another format, e.g. protobuf or Java objects to JSON, need the uncompressed value.
+ */
+public final class Compression {
+
+   /**
+    * Threshold of {@link #fromSystemProperties()} when 'interop.compression.threshold' is not set.
+    */
+   public static final int DEFAULT_THRESHOLD = 1024;
+
+   /**
+    * Largest uncompressed length {@link #decompress(byte[], int, int)} allocates, 'interop.compression.maxLength' or
+    * 64 MB, so that a corrupted or hostile header cannot ask for an array of up to 2 GB.
+    */
+   public static final int MAX_UNCOMPRESSED_LENGTH = Integer.getInteger("interop.compression.maxLength", 64 << 20);
+
+   static final byte MAGIC = (byte) 0xC0;
+   static final int HEADER_LENGTH = 6;
+
+   public enum Codec {
+      LZ4(1, "x-interop-lz4") {
+         private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+         private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+         @Override
+         int maxCompressedLength(int length) {
+            return compressor.maxCompressedLength(length);
+         }
+
+         @Override
+         int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int level) {
+            return compressor.compress(src, srcOffset, srcLength, dest, destOffset, dest.length - destOffset);
+         }
+
+         @Override
+         void decompress(byte[] src, int srcOffset, int srcLength, byte[] dest) throws IOException {
+            try {
+               if (decompressor.decompress(src, srcOffset, srcLength, dest, 0) != dest.length) {
+                  throw new IOException("Corrupted LZ4 value");
+               }
+            } catch (LZ4Exception e) {
+               throw new IOException("Corrupted LZ4 value", e);
+            }
+         }
+      },
+
+      ZSTD(2, "x-interop-zstd") {
+         @Override
+         int maxCompressedLength(int length) {
+            return (int) Zstd.compressBound(length);
+         }
+
+         @Override
+         int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int level) {
+            long length = Zstd.compressByteArray(dest, destOffset, dest.length - destOffset, src, srcOffset, srcLength, level);
+            if (Zstd.isError(length)) {
+               throw new IllegalStateException("Zstd compression failed: " + Zstd.getErrorName(length));
+            }
+            return (int) length;
+         }
+
+         @Override
+         void decompress(byte[] src, int srcOffset, int srcLength, byte[] dest) throws IOException {
+            long length = Zstd.decompressByteArray(dest, 0, dest.length, src, srcOffset, srcLength);
+            if (Zstd.isError(length) || length != dest.length) {
+               throw new IOException("Corrupted Zstd value" + (Zstd.isError(length) ? ": " + Zstd.getErrorName(length) : ""));
+            }
+         }
+      };
+
+      final byte id;
+      final String contentEncoding;
+
+      Codec(int id, String contentEncoding) {
+         this.id = (byte) id;
+         this.contentEncoding = contentEncoding;
+      }
+
+      abstract int maxCompressedLength(int length);
+
+      abstract int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int level);
+
+      abstract void decompress(byte[] src, int srcOffset, int srcLength, byte[] dest) throws IOException;
+
+      static Codec of(byte id) throws IOException {
+         for (Codec codec : values()) {
+            if (codec.id == id) {
+               return codec;
+            }
+         }
+         throw new IOException("Unknown compression codec " + id);
+      }
+   }
+
+   private final Codec codec;
+   private final int threshold;
+   private final int level;
+
+   private Compression(Codec codec, int threshold, int level) {
+      if (threshold < 0) {
+         throw new IllegalArgumentException("threshold must not be negative");
+      }
+      this.codec = codec;
+      this.threshold = threshold;
+      this.level = level;
+   }
+
+   /**
+    * LZ4, cheap enough to compress every value on the way to the server.
+    */
+   public static Compression lz4(int threshold) {
+      return new Compression(Codec.LZ4, threshold, 0);
+   }
+
+   /**
+    * Zstd at the given level, 1 to 22, 3 being its default: smaller values than LZ4 for more CPU.
+    */
+   public static Compression zstd(int threshold, int level) {
+      return new Compression(Codec.ZSTD, threshold, level);
+   }
+
+   /**
+    * Opt-in compression: the codec of the 'interop.compression' system property, 'lz4' or 'zstd', applied to values of
+    * at least 'interop.compression.threshold' bytes, or <code>null</code> when the property is not set.
+    */
+   public static Compression fromSystemProperties() {
+      String codec = System.getProperty("interop.compression");
+      if (codec == null) {
+         return null;
+      }
+      int threshold = Integer.getInteger("interop.compression.threshold", DEFAULT_THRESHOLD);
+      switch (codec.toLowerCase()) {
+         case "lz4":
+            return lz4(threshold);
+         case "zstd":
+            return zstd(threshold, Integer.getInteger("interop.compression.level", 3));
+         default:
+            throw new IllegalArgumentException("Unknown compression '" + codec + "', expected lz4 or zstd");
+      }
+   }
+
+   public Codec getCodec() {
+      return codec;
+   }
+
+   public int getThreshold() {
+      return threshold;
+   }
+
+   /**
+    * The HTTP content coding of the compressed REST bodies.
+    */
+   public String getContentEncoding() {
+      return codec.contentEncoding;
+   }
+
+   public byte[] compress(byte[] value) {
+      return compress(value, 0, value.length);
+   }
+
+   /**
+    * The framed compressed value, or the value itself when it is under the threshold or does not compress.
+    */
+   public byte[] compress(byte[] value, int offset, int length) {
+      if (length < threshold) {
+         return copy(value, offset, length);
+      }
+      byte[] compressed = new byte[HEADER_LENGTH + codec.maxCompressedLength(length)];
+      int compressedLength = codec.compress(value, offset, length, compressed, HEADER_LENGTH, level);
+      if (HEADER_LENGTH + compressedLength >= length) {
+         return copy(value, offset, length);
+      }
+      compressed[0] = MAGIC;
+      compressed[1] = codec.id;
+      compressed[2] = (byte) (length >>> 24);
+      compressed[3] = (byte) (length >>> 16);
+      compressed[4] = (byte) (length >>> 8);
+      compressed[5] = (byte) length;
+      return copy(compressed, 0, HEADER_LENGTH + compressedLength);
+   }
+
+   public static boolean isCompressed(byte[] value) {
+      return isCompressed(value, 0, value.length);
+   }
+
+   public static boolean isCompressed(byte[] value, int offset, int length) {
+      return length > HEADER_LENGTH && value[offset] == MAGIC;
+   }
+
+   public static byte[] decompress(byte[] value) throws IOException {
+      return decompress(value, 0, value.length);
+   }
+
+   /**
+    * The uncompressed value of a frame written by any codec, or the value itself when it is not compressed.
+    *
+    * @throws IOException when the frame is corrupted or its uncompressed length is over {@link #MAX_UNCOMPRESSED_LENGTH}
+    */
+   public static byte[] decompress(byte[] value, int offset, int length) throws IOException {
+      if (!isCompressed(value, offset, length)) {
+         return copy(value, offset, length);
+      }
+      Codec codec = Codec.of(value[offset + 1]);
+      int uncompressedLength = (value[offset + 2] & 0xFF) << 24 | (value[offset + 3] & 0xFF) << 16
+            | (value[offset + 4] & 0xFF) << 8 | value[offset + 5] & 0xFF;
+      if (uncompressedLength < 0 || uncompressedLength > MAX_UNCOMPRESSED_LENGTH) {
+         throw new IOException("Corrupted compressed value, uncompressed length " + uncompressedLength
+               + " out of [0, " + MAX_UNCOMPRESSED_LENGTH + "]");
+      }
+      byte[] uncompressed = new byte[uncompressedLength];
+      codec.decompress(value, offset + HEADER_LENGTH, length - HEADER_LENGTH, uncompressed);
+      return uncompressed;
+   }
+
+   private static byte[] copy(byte[] value, int offset, int length) {
+      if (offset == 0 && length == value.length) {
+         return value;
+      }
+      byte[] copy = new byte[length];
+      System.arraycopy(value, offset, copy, 0, length);
+      return copy;
+   }
+
+   @Override
+   public String toString() {
+      return codec + (codec == Codec.ZSTD ? " level " + level : "") + " over " + threshold + " bytes";
+   }
+}
@@ -0,0 +1,80 @@
+package org.infinispan.interop;
+
+import static org.apache.http.HttpHeaders.CONTENT_ENCODING;
+import static org.apache.http.HttpHeaders.CONTENT_LENGTH;
+
+import java.io.IOException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Compression of REST bodies for the blocking HTTP client, in the same format as the {@link CompressingMarshaller} of
+ * Hot Rod and the {@link CompressingTranscoder} of memcached.
+ * <p>
+ * Request bodies over the threshold are compressed and labelled with the <code>Content-Encoding</code> of the codec.
+ * The server stores the body as it is, and returns it as it is, so responses are recognised by their content rather
+ * than by a header: compressed ones, whichever endpoint wrote them, are replaced by the uncompressed content, which is
+ * what the application reads. Bodies already carrying a <code>Content-Encoding</code> are left alone.
+ */
+public final class CompressionInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+   private final Compression compression;
+
+   public CompressionInterceptor(Compression compression) {
+      this.compression = compression;
+   }
+
+   /**
+    * Adds the interceptor for requests and responses to the client being built.
+    */
+   public static HttpClientBuilder install(HttpClientBuilder builder, Compression compression) {
+      CompressionInterceptor interceptor = new CompressionInterceptor(compression);
+      // Before the standard interceptors set the Content-Length and Content-Encoding headers from the entity, and after
+      // they decode a gzip response
+      return builder.addInterceptorFirst((HttpRequestInterceptor) interceptor)
+            .addInterceptorLast((HttpResponseInterceptor) interceptor);
+   }
+
+   @Override
+   public void process(HttpRequest request, HttpContext context) throws IOException {
+      if (!(request instanceof HttpEntityEnclosingRequest) || request.containsHeader(CONTENT_ENCODING)) {
+         return;
+      }
+      HttpEntityEnclosingRequest enclosingRequest = (HttpEntityEnclosingRequest) request;
+      HttpEntity entity = enclosingRequest.getEntity();
+      if (entity == null || entity.getContentLength() >= 0 && entity.getContentLength() < compression.getThreshold()) {
+         return;
+      }
+      byte[] compressed = compression.compress(EntityUtils.toByteArray(entity));
+      ByteArrayEntity replacement = new ByteArrayEntity(compressed, ContentType.get(entity));
+      if (Compression.isCompressed(compressed)) {
+         replacement.setContentEncoding(compression.getContentEncoding());
+      }
+      enclosingRequest.setEntity(replacement);
+   }
+
+   @Override
+   public void process(HttpResponse response, HttpContext context) throws IOException {
+      HttpEntity entity = response.getEntity();
+      if (entity == null) {
+         return;
+      }
+      byte[] content = EntityUtils.toByteArray(entity);
+      if (Compression.isCompressed(content)) {
+         content = Compression.decompress(content);
+         response.removeHeaders(CONTENT_ENCODING);
+         response.setHeader(CONTENT_LENGTH, String.valueOf(content.length));
+      }
+      response.setEntity(new ByteArrayEntity(content, ContentType.get(entity)));
+   }
+}
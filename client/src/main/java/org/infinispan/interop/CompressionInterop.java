@@ -0,0 +1,145 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.infinispan.interop.Utils.Action.READ;
+import static org.infinispan.interop.Utils.Action.WRITE;
+import static org.infinispan.interop.Utils.Endpoint.HOT_ROD;
+import static org.infinispan.interop.Utils.Endpoint.MEMCACHED;
+import static org.infinispan.interop.Utils.Endpoint.REST;
+import static org.infinispan.interop.Utils.logAction;
+import static org.infinispan.interop.Utils.printMetrics;
+
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.commons.marshall.UTF8StringMarshaller;
+
+import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.transcoders.Transcoder;
+
+/**
+ * Large JSON documents compressed by the client of every endpoint in the 'json-cache': written compressed from one
+ * endpoint and read, decompressed, from the others.
+ * <p>
+ * The codec is chosen with <code>-Dinterop.compression=lz4|zstd</code>, LZ4 by default, and values of at least
+ * <code>-Dinterop.compression.threshold</code> bytes, 1024 by default, are compressed.
+ */
+public class CompressionInterop {
+
+   static final String[] WORDS = {"decentralized", "ledger", "consensus", "proof", "of", "stake", "work", "token",
+         "wallet", "exchange", "liquidity", "market", "capitalization", "block", "chain", "miners", "validators", "fees",
+         "transactions", "per", "second", "smart", "contracts", "the", "a", "and", "with", "network", "privacy", "supply"};
+
+   /**
+    * A {@link CryptoCurrency} JSON document with a description of about <code>size</code> bytes of prose.
+    */
+   static String document(String name, int rank, int size, long seed) {
+      Random random = new Random(seed);
+      StringBuilder description = new StringBuilder(size + 16);
+      while (description.length() < size) {
+         description.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(10) == 0 ? ". " : " ");
+      }
+      return "{\"description\":\"" + name + ": " + description.toString().trim() + "\",\"rank\":" + rank + "}";
+   }
+
+   public static void main(String[] args) throws Exception {
+      Compression compression = Compression.fromSystemProperties();
+      if (compression == null) {
+         compression = Compression.lz4(Compression.DEFAULT_THRESHOLD);
+      }
+      System.out.println("Compressing with " + compression);
+
+      String cacheName = "json-cache";
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder()
+            .marshaller(new CompressingMarshaller(new UTF8StringMarshaller(), compression)).build());
+      RemoteCache<String, String> cache = remoteCacheManager.getCache(cacheName);
+
+      MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress("localhost", 11215));
+      Transcoder<String> transcoder = new CompressingTranscoder<>(JsonTranscoder.text(), compression);
+
+      CloseableHttpClient httpClient = CompressionInterceptor.install(HttpClients.custom(), compression).build();
+      Executor requestExecutor = Executor.newInstance(httpClient).auth("dev", "dev");
+      String url = String.format("http://%s:%d/rest/%s/", "localhost", 8080, cacheName);
+
+      try {
+         // Write from each endpoint
+         String bitcoin = document("Bitcoin", 1, 16 * 1024, 1);
+         long start = System.nanoTime();
+         cache.put("BTC", bitcoin);
+         logAction(WRITE, cacheName, "BTC", bitcoin.length() + " bytes of JSON", HOT_ROD, start);
+
+         String ethereum = document("Ethereum", 2, 16 * 1024, 2);
+         start = System.nanoTime();
+         requestExecutor.execute(Request.Post(url + "ETH").bodyString(ethereum, ContentType.APPLICATION_JSON)).discardContent();
+         logAction(WRITE, cacheName, "ETH", ethereum.length() + " bytes of JSON", REST, start);
+
+         String litecoin = document("Litecoin", 11, 16 * 1024, 3);
+         start = System.nanoTime();
+         memcachedClient.set("LTC", 0, litecoin, transcoder).get();
+         logAction(WRITE, cacheName, "LTC", litecoin.length() + " bytes of JSON", MEMCACHED, start);
+
+         // Small values are below the threshold and stored as they are
+         String dogecoin = "{\"description\":\"Dogecoin\",\"rank\":1123}";
+         start = System.nanoTime();
+         cache.put("DOG", dogecoin);
+         logAction(WRITE, cacheName, "DOG", dogecoin, HOT_ROD, start);
+
+         // Read each one from the other endpoints
+         start = System.nanoTime();
+         String read = requestExecutor.execute(Request.Get(url + "BTC")).returnContent().asString(UTF_8);
+         logAction(READ, cacheName, "BTC", verify(bitcoin, read), REST, start);
+
+         start = System.nanoTime();
+         read = memcachedClient.get("BTC", transcoder);
+         logAction(READ, cacheName, "BTC", verify(bitcoin, read), MEMCACHED, start);
+
+         start = System.nanoTime();
+         read = cache.get("ETH");
+         logAction(READ, cacheName, "ETH", verify(ethereum, read), HOT_ROD, start);
+
+         start = System.nanoTime();
+         read = memcachedClient.get("ETH", transcoder);
+         logAction(READ, cacheName, "ETH", verify(ethereum, read), MEMCACHED, start);
+
+         start = System.nanoTime();
+         read = cache.get("LTC");
+         logAction(READ, cacheName, "LTC", verify(litecoin, read), HOT_ROD, start);
+
+         start = System.nanoTime();
+         read = requestExecutor.execute(Request.Get(url + "LTC")).returnContent().asString(UTF_8);
+         logAction(READ, cacheName, "LTC", verify(litecoin, read), REST, start);
+
+         start = System.nanoTime();
+         read = memcachedClient.get("DOG", transcoder);
+         logAction(READ, cacheName, "DOG", verify(dogecoin, read), MEMCACHED, start);
+
+         printMetrics();
+
+         // What the server stores, and sends over the wire
+         RemoteCache<String, byte[]> rawCache = JsonPassthrough.bytes(cache);
+         for (String key : new String[]{"BTC", "ETH", "LTC", "DOG"}) {
+            byte[] stored = rawCache.get(key);
+            System.out.printf("%s: %,d bytes stored, %,d uncompressed%n", key, stored.length, Compression.decompress(stored).length);
+         }
+      } finally {
+         httpClient.close();
+         memcachedClient.shutdown();
+         remoteCacheManager.stop();
+      }
+   }
+
+   private static String verify(String written, String read) {
+      if (!written.equals(read)) {
+         throw new IllegalStateException("Read a different value than the one written: " + read);
+      }
+      return read.length() + " bytes of JSON, same as written";
+   }
+}
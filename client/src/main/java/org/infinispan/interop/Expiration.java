@@ -0,0 +1,124 @@
+package org.infinispan.interop;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.fluent.Request;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.RemoteCache;
+
+/**
+ * The lifespan and max idle time of an entry, written the same way from the three endpoints.
+ * <p>
+ * Each endpoint spells them differently. Hot Rod sends both with every write, where 0 asks for the expiration of the
+ * cache and a negative value for none. REST sends them as the <code>timeToLiveSeconds</code> and
+ * <code>maxIdleTimeSeconds</code> headers, the expiration of the cache applying when they are missing and none when
+ * they are negative. Memcached only has the lifespan, as the expiration time of <code>set</code> in seconds: times
+ * longer than 30 days are read as a Unix time, and the <code>-1</code> of the demos writes entries that never expire,
+ * which only eviction removes. Max idle times have a one second granularity, and lifespans too except on Hot Rod.
+ */
+public final class Expiration {
+
+   /**
+    * The expiration configured in the cache, e.g. the 10 seconds lifespan of the 'price-ticks' cache.
+    */
+   public static final Expiration CACHE_DEFAULT = new Expiration(0, 0);
+
+   /**
+    * Entries that never expire, as written by <code>set(key, -1, value)</code> from memcached.
+    */
+   public static final Expiration IMMORTAL = new Expiration(-1, -1);
+
+   static final String TIME_TO_LIVE_HEADER = "timeToLiveSeconds";
+   static final String MAX_IDLE_HEADER = "maxIdleTimeSeconds";
+   static final long MEMCACHED_MAX_RELATIVE_SECONDS = TimeUnit.DAYS.toSeconds(30);
+
+   private final long lifespanMillis;
+   private final long maxIdleMillis;
+
+   private Expiration(long lifespanMillis, long maxIdleMillis) {
+      this.lifespanMillis = lifespanMillis;
+      this.maxIdleMillis = maxIdleMillis;
+   }
+
+   /**
+    * Entries expiring <code>lifespan</code> after they are written, whether they are read or not.
+    */
+   public static Expiration lifespan(long lifespan, TimeUnit unit) {
+      if (lifespan <= 0) {
+         throw new IllegalArgumentException("The lifespan must be positive");
+      }
+      return new Expiration(unit.toMillis(lifespan), -1);
+   }
+
+   /**
+    * The same lifespan, and also expiring once they have not been read for <code>maxIdle</code>. Entries written from
+    * memcached only get the lifespan.
+    */
+   public Expiration maxIdle(long maxIdle, TimeUnit unit) {
+      if (maxIdle <= 0) {
+         throw new IllegalArgumentException("The max idle time must be positive");
+      }
+      return new Expiration(lifespanMillis, unit.toMillis(maxIdle));
+   }
+
+   public <K, V> V put(RemoteCache<K, V> remoteCache, K key, V value) {
+      return remoteCache.put(key, value, lifespanMillis, TimeUnit.MILLISECONDS, maxIdleMillis, TimeUnit.MILLISECONDS);
+   }
+
+   public <K, V> CompletableFuture<V> putAsync(RemoteCache<K, V> remoteCache, K key, V value) {
+      return remoteCache.putAsync(key, value, lifespanMillis, TimeUnit.MILLISECONDS, maxIdleMillis, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Writes the entry unless the key is already in the cache, returning the value it has then or null.
+    */
+   public <K, V> V putIfAbsent(RemoteCache<K, V> remoteCache, K key, V value) {
+      return remoteCache.withFlags(Flag.FORCE_RETURN_VALUE)
+            .putIfAbsent(key, value, lifespanMillis, TimeUnit.MILLISECONDS, maxIdleMillis, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Adds the expiration headers to a REST write.
+    */
+   public Request headers(Request request) {
+      if (lifespanMillis != 0) {
+         request.addHeader(TIME_TO_LIVE_HEADER, Long.toString(seconds(lifespanMillis)));
+      }
+      if (maxIdleMillis != 0) {
+         request.addHeader(MAX_IDLE_HEADER, Long.toString(seconds(maxIdleMillis)));
+      }
+      return request;
+   }
+
+   /**
+    * The expiration time of a memcached <code>set</code>: the lifespan in seconds, as a Unix time beyond 30 days, 0
+    * when the entry has no lifespan of its own, or -1 when it never expires.
+    */
+   public int memcachedExpiration() {
+      if (lifespanMillis <= 0) {
+         return (int) seconds(lifespanMillis);
+      }
+      long seconds = seconds(lifespanMillis);
+      if (seconds > MEMCACHED_MAX_RELATIVE_SECONDS) {
+         seconds += TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+      }
+      return (int) seconds;
+   }
+
+   /**
+    * Whole seconds, rounded up so that a short lifespan does not become 0, which means no lifespan at all.
+    */
+   private static long seconds(long millis) {
+      return millis < 0 ? -1 : (millis + 999) / 1000;
+   }
+
+   @Override
+   public String toString() {
+      return String.format("lifespan %s, max idle %s", format(lifespanMillis), format(maxIdleMillis));
+   }
+
+   private static String format(long millis) {
+      return millis < 0 ? "none" : millis == 0 ? "of the cache" : millis + " ms";
+   }
+}
@@ -7,6 +7,9 @@ import static org.infinispan.interop.Utils.Endpoint.HOT_ROD;
 import static org.infinispan.interop.Utils.Endpoint.MEMCACHED;
 import static org.infinispan.interop.Utils.Endpoint.REST;
 import static org.infinispan.interop.Utils.logAction;
+import static org.infinispan.interop.Utils.printMetrics;
+import static org.infinispan.interop.Utils.withNearCache;
+import static org.infinispan.interop.Utils.withRouting;
 
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
@@ -29,7 +32,7 @@ public class JsonInterop {
 
    public static void main(String[] args) throws Exception {
       UTF8StringMarshaller marshaller = new UTF8StringMarshaller();
-      Configuration configuration = new ConfigurationBuilder().marshaller(marshaller).build();
+      Configuration configuration = withNearCache(withRouting(new ConfigurationBuilder()).marshaller(marshaller)).build();
       RemoteCacheManager remoteCacheManager = new RemoteCacheManager(configuration);
 
       MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress("localhost", 11215));
@@ -44,63 +47,89 @@ public class JsonInterop {
       String litecoin = "{\"description\": \"Litecon\",\"rank\": 11}";
       String dogecoin = "{\"description\": \"Dogecoin\",\"rank\": 1123}";
 
+      long start = System.nanoTime();
       cache.put("BTC", bitcoin);
+      logAction(WRITE, cacheName, "BTC", bitcoin, HOT_ROD, start);
+
+      start = System.nanoTime();
       cache.put("LTC", litecoin);
-      cache.put("DOG", dogecoin);
+      logAction(WRITE, cacheName, "LTC", litecoin, HOT_ROD, start);
 
-      logAction(WRITE, "BTC", bitcoin, HOT_ROD);
-      logAction(WRITE, "LTC", litecoin, HOT_ROD);
-      logAction(WRITE, "DOG", dogecoin, HOT_ROD);
+      start = System.nanoTime();
+      cache.put("DOG", dogecoin);
+      logAction(WRITE, cacheName, "DOG", dogecoin, HOT_ROD, start);
 
       System.out.println("Cache size after insertion from Hot Rod: " + cache.size());
 
       // Read from REST
       Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
 
+      start = System.nanoTime();
       String response = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "BTC")))
             .returnContent().asString();
 
-      logAction(READ, "BTC", response, REST);
+      logAction(READ, cacheName, "BTC", response, REST, start);
 
       // Writing from REST with a different charset
       Charset shift_jis = Charset.forName("Shift_JIS");
       String content = "{\"description\": \"現金\",\"rank\": 12222}";
 
-      byte[] encoded = shift_jis.encode(content).array();
+      // Only the encoded bytes: Charset.encode(...).array() would return the whole, larger, backing array
+      byte[] encoded = content.getBytes(shift_jis);
 
+      start = System.nanoTime();
       requestExecutor.execute(Request.Post(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "ZEC"))
             .bodyByteArray(encoded)
             .addHeader("Content-Type", "text/plain; charset=" + shift_jis.displayName()));
-      logAction(WRITE, "ZEC", content, REST);
+      logAction(WRITE, cacheName, "ZEC", content, REST, start);
 
 
       // Reading as UTF-8 (this is the default charset)
+      start = System.nanoTime();
       byte[] bytes = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "ZEC"))
                   .addHeader("Accept", "application/json; charset=UTF-8"))
             .returnContent().asBytes();
-      logAction(READ, "ZEC", new String(bytes, UTF_8), REST);
+      logAction(READ, cacheName, "ZEC", new String(bytes, UTF_8), REST, start);
 
       // Read with Memcached
+      start = System.nanoTime();
       Object btc = memcachedClient.get("BTC");
-      logAction(READ, "BTC", btc, MEMCACHED);
+      logAction(READ, cacheName, "BTC", btc, MEMCACHED, start);
 
+      start = System.nanoTime();
       Object zec = memcachedClient.get("ZEC");
-      logAction(READ, "ZEC", zec, MEMCACHED);
+      logAction(READ, cacheName, "ZEC", zec, MEMCACHED, start);
 
       // Write with memcached
       String eth = "{\"description\": \"Ethereum\",\"rank\": 2}";
+      start = System.nanoTime();
       memcachedClient.set("ETH", -1, eth).get();
-      logAction(WRITE, "ETH", eth, MEMCACHED);
+      logAction(WRITE, cacheName, "ETH", eth, MEMCACHED, start);
 
       // Read with other endpoints
-      logAction(READ, "ETH", cache.get("ETH"), HOT_ROD);
+      start = System.nanoTime();
+      String fromHotRod = cache.get("ETH");
+      logAction(READ, cacheName, "ETH", fromHotRod, HOT_ROD, start);
 
+      // Read the stored UTF-8 bytes, without decoding them into Strings, from Hot Rod and memcached
+      RemoteCache<String, byte[]> rawCache = JsonPassthrough.bytes(cache);
+      start = System.nanoTime();
+      byte[] rawEth = rawCache.get("ETH");
+      logAction(READ, cacheName, "ETH as raw bytes", rawEth, HOT_ROD, start);
+
+      start = System.nanoTime();
+      byte[] rawBtc = memcachedClient.get("BTC", JsonPassthrough.TRANSCODER);
+      logAction(READ, cacheName, "BTC as raw bytes", rawBtc, MEMCACHED, start);
+
+      start = System.nanoTime();
       String res = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "ETH")))
             .returnContent().asString();
-      logAction(READ, "ETH", res, REST);
+      logAction(READ, cacheName, "ETH", res, REST, start);
+
+      printMetrics();
 
       remoteCacheManager.close();
       memcachedClient.shutdown();
@@ -0,0 +1,59 @@
+package org.infinispan.interop;
+
+import org.infinispan.client.hotrod.DataFormat;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.commons.dataconversion.MediaType;
+import org.infinispan.commons.marshall.IdentityMarshaller;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.Transcoder;
+
+/**
+ * Access to the JSON documents of the 'json-cache' as the bytes stored by the server, without decoding them into a
+ * {@link String} and encoding them back.
+ * <p>
+ * The server stores <code>application/json</code> as UTF-8. Since the values are requested as
+ * <code>application/json</code> too, it returns the stored bytes as they are, and the {@link IdentityMarshaller} hands
+ * them over to the caller untouched. Memcached clients use the {@link #TRANSCODER}, which returns the bytes read from
+ * the socket instead of a String. Callers needing another charset decode the bytes once, themselves.
+ */
+final class JsonPassthrough {
+
+   static final Transcoder<byte[]> TRANSCODER = new BytesTranscoder();
+
+   private JsonPassthrough() {
+   }
+
+   /**
+    * A view of the cache whose values are the UTF-8 JSON bytes. Keys keep the format of the cache.
+    */
+   static RemoteCache<String, byte[]> bytes(RemoteCache<String, ?> cache) {
+      // A DataFormat is bound to the RemoteCacheManager of the cache, so it is not shared
+      return cache.withDataFormat(DataFormat.builder()
+            .valueType(MediaType.APPLICATION_JSON)
+            .valueMarshaller(IdentityMarshaller.INSTANCE)
+            .build());
+   }
+
+   private static final class BytesTranscoder implements Transcoder<byte[]> {
+      @Override
+      public boolean asyncDecode(CachedData data) {
+         return false;
+      }
+
+      @Override
+      public CachedData encode(byte[] bytes) {
+         return new CachedData(0, bytes, getMaxSize());
+      }
+
+      @Override
+      public byte[] decode(CachedData data) {
+         return data.getData();
+      }
+
+      @Override
+      public int getMaxSize() {
+         return CachedData.MAX_SIZE;
+      }
+   }
+}
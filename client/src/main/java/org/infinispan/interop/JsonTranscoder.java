@@ -0,0 +1,63 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.function.Function;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.Transcoder;
+
+/**
+ * Memcached transcoder for the connectors with <code>client-encoding="application/json"</code>: values are sent and
+ * received as UTF-8 JSON, with no flags.
+ * <p>
+ * The default <code>SerializingTranscoder</code> Java-serializes anything that is not a String or a primitive and
+ * gzips values over 16 KB, and the server would store either as if it was JSON. The conversion between the JSON bytes
+ * and the application type is pluggable, so that any JSON library can be used; {@link #text()} keeps the JSON as a
+ * String.
+ */
+public final class JsonTranscoder<T> implements Transcoder<T> {
+
+   private static final JsonTranscoder<String> TEXT = new JsonTranscoder<>(json -> json.getBytes(UTF_8), bytes -> new String(bytes, UTF_8));
+
+   private final Function<? super T, byte[]> encoder;
+   private final Function<byte[], ? extends T> decoder;
+   private final int maxSize;
+
+   public JsonTranscoder(Function<? super T, byte[]> encoder, Function<byte[], ? extends T> decoder) {
+      this(encoder, decoder, CachedData.MAX_SIZE);
+   }
+
+   public JsonTranscoder(Function<? super T, byte[]> encoder, Function<byte[], ? extends T> decoder, int maxSize) {
+      this.encoder = encoder;
+      this.decoder = decoder;
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * JSON documents as Strings.
+    */
+   public static JsonTranscoder<String> text() {
+      return TEXT;
+   }
+
+   @Override
+   public boolean asyncDecode(CachedData data) {
+      return false;
+   }
+
+   @Override
+   public CachedData encode(T value) {
+      return new CachedData(0, encoder.apply(value), maxSize);
+   }
+
+   @Override
+   public T decode(CachedData data) {
+      return decoder.apply(data.getData());
+   }
+
+   @Override
+   public int getMaxSize() {
+      return maxSize;
+   }
+}
@@ -0,0 +1,86 @@
+package org.infinispan.interop;
+
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.infinispan.client.hotrod.DataFormat;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.Configuration;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
+import org.infinispan.client.hotrod.impl.transport.netty.ChannelFactory;
+
+/**
+ * The server owning each key of a cache, according to the consistent hash the Hot Rod client receives with the
+ * topology of the cache, to form batches of keys owned by the same server.
+ * <p>
+ * The client splits a <code>putAll</code> or <code>getAll</code> in one request per server owning some of its keys,
+ * so a batch of keys spread over the whole cluster waits for the slowest of several requests, while a batch of keys
+ * owned by one server is a single request, answered by that server without a hop to another node.
+ * <p>
+ * Only clients with the default <code>HASH_DISTRIBUTION_AWARE</code> intelligence receive the consistent hash, once
+ * they have sent a first request to the cache. Until then, and with other clients, the owner of every key is null.
+ */
+public final class KeyAffinity<K> {
+
+   private final DataFormat dataFormat;
+   private final ChannelFactory channelFactory;
+   private final byte[] cacheName;
+   private final int keySizeEstimate;
+   private final int valueSizeEstimate;
+
+   public KeyAffinity(RemoteCache<K, ?> remoteCache) {
+      RemoteCacheManager remoteCacheManager = remoteCache.getRemoteCacheManager();
+      Configuration configuration = remoteCacheManager.getConfiguration();
+      this.dataFormat = remoteCache.getDataFormat();
+      this.channelFactory = remoteCacheManager.getChannelFactory();
+      this.cacheName = RemoteCacheManager.cacheNameBytes(remoteCache.getName());
+      this.keySizeEstimate = configuration.keySizeEstimate();
+      this.valueSizeEstimate = configuration.valueSizeEstimate();
+   }
+
+   /**
+    * The primary owner of the key, to which the client sends single key operations, or null when the client has no
+    * consistent hash for the cache.
+    */
+   public SocketAddress owner(K key) {
+      return owner(channelFactory.getConsistentHash(cacheName), key);
+   }
+
+   /**
+    * The keys grouped by {@link #owner(Object) owner}, each group in the iteration order of the keys.
+    */
+   public Map<SocketAddress, Set<K>> group(Collection<? extends K> keys) {
+      ConsistentHash consistentHash = channelFactory.getConsistentHash(cacheName);
+      Map<SocketAddress, Set<K>> groups = new HashMap<>();
+      for (K key : keys) {
+         groups.computeIfAbsent(owner(consistentHash, key), owner -> new LinkedHashSet<>()).add(key);
+      }
+      return groups;
+   }
+
+   /**
+    * The entries grouped by the {@link #owner(Object) owner} of their key, each group in the iteration order of the
+    * entries.
+    */
+   public <V> Map<SocketAddress, Map<K, V>> group(Map<? extends K, ? extends V> entries) {
+      ConsistentHash consistentHash = channelFactory.getConsistentHash(cacheName);
+      Map<SocketAddress, Map<K, V>> groups = new HashMap<>();
+      entries.forEach((key, value) ->
+            groups.computeIfAbsent(owner(consistentHash, key), owner -> new LinkedHashMap<>()).put(key, value));
+      return groups;
+   }
+
+   private SocketAddress owner(ConsistentHash consistentHash, K key) {
+      if (consistentHash == null) {
+         return null;
+      }
+      // As the client routes requests: caches storing objects hash the key itself, the others its marshalled form
+      return consistentHash.getServer(dataFormat.isObjectStorage() ? key : dataFormat.keyToBytes(key, keySizeEstimate, valueSizeEstimate));
+   }
+}
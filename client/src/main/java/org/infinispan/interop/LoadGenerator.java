@@ -0,0 +1,211 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.infinispan.commons.dataconversion.MediaType.APPLICATION_JSON_TYPE;
+import static org.infinispan.interop.Utils.METRICS;
+import static org.infinispan.interop.Utils.logAction;
+import static org.infinispan.interop.Utils.logFailure;
+import static org.infinispan.interop.Utils.measuring;
+import static org.infinispan.interop.Utils.registerSchema;
+import static org.infinispan.interop.Utils.withRouting;
+
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.HttpClients;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.Search;
+import org.infinispan.client.hotrod.configuration.Configuration;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.client.hotrod.marshall.ProtoStreamMarshaller;
+import org.infinispan.interop.OperationMetrics.Snapshot;
+import org.infinispan.interop.Utils.Action;
+import org.infinispan.interop.Utils.Endpoint;
+import org.infinispan.query.dsl.QueryFactory;
+
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * Drives Hot Rod, REST and memcached at the same time against the 'indexed' cache, as production clients do, with a
+ * configurable number of virtual threads per endpoint. Each thread runs a READ/WRITE/QUERY mix over a shared set of keys
+ * and every operation is logged with {@link Utils#logAction}, recording it in the {@link OperationMetrics} reported every
+ * 5 seconds, with the console sink off unless '-Dinterop.console=true'. The payload size is the body of REST and
+ * memcached operations; Hot Rod does not expose the size of the marshalled entries.
+ * <p>
+ * Arguments: virtual threads per endpoint (default 100), duration in seconds (default 30), percentage of reads (default
+ * 80) and of writes (default 15); the rest are queries. Memcached has no queries, so its queries become reads. With
+ * '-Dinterop.metrics.jmx=true' the metrics are also exposed over JMX.
+ */
+public class LoadGenerator {
+
+   private static final int KEYS = 1000;
+   private static final String CACHE_NAME = "indexed";
+   private static final String QUERY = "from CryptoCurrency where rank < 10";
+   // Encoded once, as the '<' of the query is not allowed in a URL
+   private static final String QUERY_URL = String.format("http://%s:%d/rest/%s?action=search&max_results=10&query=%s",
+         "localhost", 8080, CACHE_NAME, URLEncoder.encode(QUERY, UTF_8));
+   private static final int REPORT_SECONDS = 5;
+
+   private final RemoteCache<String, CryptoCurrency> remoteCache;
+   private final QueryFactory queryFactory;
+   private final Executor requestExecutor;
+   private final MemcachedClient memcachedClient;
+   private final int readPercent;
+   private final int writePercent;
+
+   LoadGenerator(RemoteCache<String, CryptoCurrency> remoteCache, Executor requestExecutor, MemcachedClient memcachedClient,
+                 int readPercent, int writePercent) {
+      this.remoteCache = remoteCache;
+      this.queryFactory = Search.getQueryFactory(remoteCache);
+      this.requestExecutor = requestExecutor;
+      this.memcachedClient = memcachedClient;
+      this.readPercent = readPercent;
+      this.writePercent = writePercent;
+      // Registered upfront, so that the MBeans of every operation exist before the first report
+      for (Endpoint endpoint : Endpoint.values()) {
+         for (Action action : Action.values()) {
+            METRICS.stats(endpoint, action, CACHE_NAME);
+         }
+      }
+   }
+
+   void run(int threadsPerEndpoint, long durationNanos) throws InterruptedException {
+      long deadline = System.nanoTime() + durationNanos;
+      try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+         for (Endpoint endpoint : Endpoint.values()) {
+            for (int i = 0; i < threadsPerEndpoint; i++) {
+               executor.submit(() -> loop(endpoint, deadline));
+            }
+         }
+      }
+   }
+
+   private void loop(Endpoint endpoint, long deadline) {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (System.nanoTime() < deadline) {
+         int id = random.nextInt(KEYS);
+         int dice = random.nextInt(100);
+         Action action = dice < readPercent ? Action.READ : dice < readPercent + writePercent ? Action.WRITE : Action.QUERY;
+         if (action == Action.QUERY && endpoint == Endpoint.MEMCACHED) {
+            action = Action.READ;
+         }
+         String key = "LOAD-" + id;
+         long start = System.nanoTime();
+         try {
+            logAction(action, CACHE_NAME, key, execute(endpoint, action, key, id), endpoint, start);
+         } catch (Exception e) {
+            logFailure(action, CACHE_NAME, key, endpoint, e);
+         }
+      }
+   }
+
+   /**
+    * @return the value or body that was sent or received, whose length is the payload of REST and memcached operations
+    */
+   private Object execute(Endpoint endpoint, Action action, String key, int id) throws Exception {
+      switch (endpoint) {
+         case HOT_ROD:
+            switch (action) {
+               case READ:
+                  return remoteCache.get(key);
+               case WRITE:
+                  CryptoCurrency value = new CryptoCurrency("Currency " + id, id);
+                  remoteCache.put(key, value);
+                  return value;
+               default:
+                  return queryFactory.create(QUERY).maxResults(10).list();
+            }
+         case REST:
+            switch (action) {
+               case READ:
+                  return requestExecutor.execute(Request.Get(restUrl(key)).addHeader(ACCEPT, APPLICATION_JSON_TYPE))
+                        .returnContent().asBytes();
+               case WRITE:
+                  String json = json(id);
+                  requestExecutor.execute(Request.Post(restUrl(key)).bodyString(json, ContentType.APPLICATION_JSON)).discardContent();
+                  return json;
+               default:
+                  return requestExecutor.execute(Request.Get(QUERY_URL)).returnContent().asBytes();
+            }
+         default:
+            if (action == Action.WRITE) {
+               String json = json(id);
+               memcachedClient.set(key, -1, json).get();
+               return json;
+            }
+            Object value = memcachedClient.get(key);
+            return value == null ? null : value.toString();
+      }
+   }
+
+   private static String restUrl(String key) {
+      return String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, CACHE_NAME, key);
+   }
+
+   private static String json(int id) {
+      return "{\"_type\": \"CryptoCurrency\",\"description\": \"Currency " + id + "\",\"rank\": " + id + "}";
+   }
+
+   static void report(List<Snapshot> snapshots, long periodSeconds) {
+      for (Endpoint endpoint : Endpoint.values()) {
+         long total = 0;
+         long errors = 0;
+         for (Snapshot snapshot : snapshots) {
+            if (snapshot.getEndpoint() == endpoint) {
+               total += snapshot.getOperations();
+               errors += snapshot.getErrors();
+            }
+         }
+         System.out.printf("%s: %,d ops/sec, %d errors%n", endpoint, total / periodSeconds, errors);
+      }
+      snapshots.forEach(snapshot -> System.out.println("   " + snapshot));
+   }
+
+   public static void main(String[] args) throws Exception {
+      int threadsPerEndpoint = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+      int durationSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+      int readPercent = args.length > 2 ? Integer.parseInt(args[2]) : 80;
+      int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 15;
+
+      Configuration configuration = withRouting(new ConfigurationBuilder().marshaller(new ProtoStreamMarshaller())).build();
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(configuration);
+      registerSchema(remoteCacheManager);
+      RemoteCache<String, CryptoCurrency> remoteCache = remoteCacheManager.getCache(CACHE_NAME);
+
+      // One pooled connection per REST thread, instead of the 100 per route of the default fluent Executor
+      Executor requestExecutor = Executor.newInstance(HttpClients.custom()
+            .setMaxConnTotal(threadsPerEndpoint).setMaxConnPerRoute(threadsPerEndpoint).build())
+            .auth("dev", "dev");
+      MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress("localhost", 11214));
+
+      for (int i = 0; i < KEYS; i++) {
+         remoteCache.put("LOAD-" + i, new CryptoCurrency("Currency " + i, i));
+      }
+
+      measuring();
+      LoadGenerator loadGenerator = new LoadGenerator(remoteCache, requestExecutor, memcachedClient, readPercent, writePercent);
+      if (Boolean.getBoolean("interop.metrics.jmx")) {
+         METRICS.registerMBeans();
+      }
+      ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+      METRICS.reportEvery(REPORT_SECONDS, TimeUnit.SECONDS, reporter, snapshots -> report(snapshots, REPORT_SECONDS));
+
+      System.out.printf("Running %d virtual threads per endpoint for %d seconds%n", threadsPerEndpoint, durationSeconds);
+      loadGenerator.run(threadsPerEndpoint, TimeUnit.SECONDS.toNanos(durationSeconds));
+      reporter.shutdown();
+
+      remoteCacheManager.stop();
+      memcachedClient.shutdown();
+   }
+}
@@ -8,9 +8,13 @@ import static org.infinispan.interop.Utils.Endpoint.HOT_ROD;
 import static org.infinispan.interop.Utils.Endpoint.MEMCACHED;
 import static org.infinispan.interop.Utils.Endpoint.REST;
 import static org.infinispan.interop.Utils.logAction;
+import static org.infinispan.interop.Utils.printMetrics;
+import static org.infinispan.interop.Utils.withNearCache;
+import static org.infinispan.interop.Utils.withRouting;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.regex.Pattern;
 
 import org.apache.http.StatusLine;
 import org.apache.http.client.fluent.Executor;
@@ -29,7 +33,9 @@ import net.spy.memcached.MemcachedClient;
 public class MarshalledStorageInterop {
 
    public static void main(String[] args) throws IOException {
-      Configuration configuration = new ConfigurationBuilder().build();
+      // Only CryptoCurrency, besides the primitive wrappers and Strings, is deserialized from the server
+      Configuration configuration = withNearCache(withRouting(new ConfigurationBuilder())
+            .addJavaSerialWhiteList(Pattern.quote(CryptoCurrency.class.getName()))).build();
       RemoteCacheManager remoteCacheManager = new RemoteCacheManager(configuration);
       MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress("localhost", 11212));
 
@@ -43,50 +49,79 @@ public class MarshalledStorageInterop {
       CryptoCurrency litecoin = new CryptoCurrency("Litecoin", 2);
       CryptoCurrency dogecoin = new CryptoCurrency("Dogecoin", 100);
 
+      long start = System.nanoTime();
       remoteCache.put(10, bitcoin);
-      logAction(WRITE, 10, bitcoin, HOT_ROD);
+      logAction(WRITE, cacheName, 10, bitcoin, HOT_ROD, start);
 
+      start = System.nanoTime();
       remoteCache.put(20, litecoin);
-      logAction(WRITE, 20, litecoin, HOT_ROD);
+      logAction(WRITE, cacheName, 20, litecoin, HOT_ROD, start);
 
+      start = System.nanoTime();
       remoteCache.put(30, dogecoin);
-      logAction(WRITE, 30, dogecoin, HOT_ROD);
+      logAction(WRITE, cacheName, 30, dogecoin, HOT_ROD, start);
 
       System.out.println("Cache size after insertion = " + remoteCache.size());
 
       Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
 
       // Read from REST as JSON
+      start = System.nanoTime();
       String response = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, 20))
                   .addHeader(ACCEPT, APPLICATION_JSON_TYPE)
                   .addHeader("Key-Content-Type", "application/x-java-object;type=java.lang.Integer"))
             .returnContent().asString();
-      logAction(READ, "'LTC' as JSON", response, REST);
+      logAction(READ, cacheName, "'LTC' as JSON", response, REST, start);
 
       // Write from REST in JSON format
       String json = "{\"_type\":\"org.infinispan.interop.CryptoCurrency\",\"description\":\"Monero\",\"rank\":20}";
+      start = System.nanoTime();
       StatusLine status = requestExecutor.execute(
             Request.Post(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, 40))
                   .addHeader("key-content-type","application/x-java-object; type=java.lang.Integer")
                   .bodyString(json, ContentType.APPLICATION_JSON))
             .returnResponse().getStatusLine();
 
-      logAction(WRITE, 40, json, REST);
+      logAction(WRITE, cacheName, 40, json, REST, start);
       System.out.println("Status code: " + status);
 
       // Read from Hot Rod the data inserted via REST
+      start = System.nanoTime();
       CryptoCurrency eth = remoteCache.get(40);
-      logAction(READ, 40, eth, HOT_ROD);
+      logAction(READ, cacheName, 40, eth, HOT_ROD, start);
 
       // Write entry with a String key, as memcached does not work with other types
       CryptoCurrency cardano = new CryptoCurrency("Cardano", 9);
+      start = System.nanoTime();
       remoteCache.put("120", cardano);
-      logAction(WRITE, "\"120\"", cardano, HOT_ROD);
+      logAction(WRITE, cacheName, "\"120\"", cardano, HOT_ROD, start);
 
       // Read from memcached. Format will be JSON since the memcached server's encoding is configured as 'application/json'
+      start = System.nanoTime();
       Object o = memcachedClient.get("120");
-      logAction(READ, "120", o, MEMCACHED);
+      logAction(READ, cacheName, "120", o, MEMCACHED, start);
+
+      // Numeric keys sent as fixed-width text are understood by the three endpoints, with no Key-Content-Type header
+      RemoteCache<Number, CryptoCurrency> numericKeyCache = NumericKeys.withNumericKeys(remoteCache);
+      CryptoCurrency tron = new CryptoCurrency("Tron", 11);
+      start = System.nanoTime();
+      numericKeyCache.put(130, tron);
+      logAction(WRITE, cacheName, 130, tron, HOT_ROD, start);
+
+      String key = NumericKeys.encode(130);
+      start = System.nanoTime();
+      response = requestExecutor
+            .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, key))
+                  .addHeader(ACCEPT, APPLICATION_JSON_TYPE))
+            .returnContent().asString();
+      logAction(READ, cacheName, "130 as '" + key + "'", response, REST, start);
+
+      start = System.nanoTime();
+      o = memcachedClient.get(key);
+      logAction(READ, cacheName, "130 as '" + key + "'", o, MEMCACHED, start);
+
+      printMetrics();
 
       remoteCacheManager.close();
       memcachedClient.shutdown();
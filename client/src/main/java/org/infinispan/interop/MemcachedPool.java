@@ -0,0 +1,122 @@
+package org.infinispan.interop;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.spy.memcached.ConnectionFactory;
+import net.spy.memcached.ConnectionFactoryBuilder;
+import net.spy.memcached.ConnectionFactoryBuilder.Protocol;
+import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.internal.BulkFuture;
+import net.spy.memcached.transcoders.Transcoder;
+
+/**
+ * A pool of memcached connections to every <code>memcached-*</code> connector, replacing one bare
+ * <code>MemcachedClient</code> per demo.
+ * <p>
+ * Each connector gets several clients, each with its own connection, with Nagle disabled and consecutive gets merged
+ * into multi-key gets. {@link #getBulk(int, Collection)} splits a large set of keys into batches sent in parallel over
+ * the pooled connections. The connectors with <code>client-encoding="application/json"</code> use the
+ * {@link JsonTranscoder}.
+ * <p>
+ * The Infinispan 9.4 connectors only speak the text protocol; {@link Protocol#BINARY} is for servers that support it.
+ */
+public final class MemcachedPool implements AutoCloseable {
+
+   /**
+    * The connectors of 'clustered.xml' and whether they have <code>client-encoding="application/json"</code>.
+    */
+   static final Map<Integer, Boolean> CONNECTORS;
+
+   static {
+      Map<Integer, Boolean> connectors = new HashMap<>();
+      connectors.put(11211, false);
+      connectors.put(11212, true);
+      connectors.put(11213, true);
+      connectors.put(11214, true);
+      connectors.put(11215, false);
+      connectors.put(11216, true);
+      CONNECTORS = Collections.unmodifiableMap(connectors);
+   }
+
+   static final int BATCH_SIZE = 100;
+   static final long TIMEOUT_MILLIS = 2500;
+
+   private final Map<Integer, MemcachedClient[]> clients = new HashMap<>();
+
+   public MemcachedPool(String host, int connectionsPerConnector) throws IOException {
+      this(host, connectionsPerConnector, Protocol.TEXT);
+   }
+
+   @SuppressWarnings("unchecked")
+   public MemcachedPool(String host, int connectionsPerConnector, Protocol protocol) throws IOException {
+      for (Map.Entry<Integer, Boolean> connector : CONNECTORS.entrySet()) {
+         ConnectionFactoryBuilder builder = new ConnectionFactoryBuilder()
+               .setProtocol(protocol)
+               .setUseNagleAlgorithm(false)
+               .setShouldOptimize(true)
+               .setOpTimeout(TIMEOUT_MILLIS)
+               .setDaemon(true);
+         if (connector.getValue()) {
+            builder.setTranscoder((Transcoder<Object>) (Transcoder<?>) JsonTranscoder.text());
+         }
+         ConnectionFactory connectionFactory = builder.build();
+         MemcachedClient[] pooled = new MemcachedClient[connectionsPerConnector];
+         for (int i = 0; i < connectionsPerConnector; i++) {
+            pooled[i] = new MemcachedClient(connectionFactory, Collections.singletonList(new InetSocketAddress(host, connector.getKey())));
+         }
+         clients.put(connector.getKey(), pooled);
+      }
+   }
+
+   /**
+    * One of the pooled clients of the connector on <code>port</code>.
+    */
+   public MemcachedClient client(int port) {
+      MemcachedClient[] pooled = clients.get(port);
+      if (pooled == null) {
+         throw new IllegalArgumentException("No memcached connector on port " + port);
+      }
+      return pooled[ThreadLocalRandom.current().nextInt(pooled.length)];
+   }
+
+   /**
+    * Gets all the keys in batches of {@link #BATCH_SIZE}, sent in parallel. Missing keys are absent from the result.
+    */
+   public Map<String, Object> getBulk(int port, Collection<String> keys) throws InterruptedException, ExecutionException, TimeoutException {
+      List<BulkFuture<Map<String, Object>>> batches = new ArrayList<>(keys.size() / BATCH_SIZE + 1);
+      Iterator<String> iterator = keys.iterator();
+      while (iterator.hasNext()) {
+         List<String> batch = new ArrayList<>(BATCH_SIZE);
+         while (iterator.hasNext() && batch.size() < BATCH_SIZE) {
+            batch.add(iterator.next());
+         }
+         batches.add(client(port).asyncGetBulk(batch));
+      }
+      Map<String, Object> values = new HashMap<>(keys.size() * 2);
+      for (BulkFuture<Map<String, Object>> batch : batches) {
+         values.putAll(batch.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+      }
+      return values;
+   }
+
+   @Override
+   public void close() {
+      for (MemcachedClient[] pooled : clients.values()) {
+         for (MemcachedClient client : pooled) {
+            client.shutdown();
+         }
+      }
+   }
+}
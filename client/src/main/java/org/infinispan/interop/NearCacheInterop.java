@@ -0,0 +1,112 @@
+package org.infinispan.interop;
+
+import static org.infinispan.interop.Utils.Action.READ;
+import static org.infinispan.interop.Utils.Action.WRITE;
+import static org.infinispan.interop.Utils.Endpoint.HOT_ROD;
+import static org.infinispan.interop.Utils.Endpoint.MEMCACHED;
+import static org.infinispan.interop.Utils.Endpoint.REST;
+import static org.infinispan.interop.Utils.logAction;
+import static org.infinispan.interop.Utils.printMetrics;
+import static org.infinispan.interop.Utils.registerSchema;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.Configuration;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.client.hotrod.configuration.NearCacheMode;
+import org.infinispan.client.hotrod.marshall.ProtoStreamMarshaller;
+
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * Hot Rod near cache in front of the 'indexed' cache. Checks that values written from REST and memcached invalidate
+ * the copy held by the Hot Rod client, so that repeated reads are local but never stale.
+ */
+public class NearCacheInterop {
+
+   private static final long INVALIDATION_TIMEOUT_MS = 5000;
+
+   public static void main(String[] args) throws Exception {
+      int maxEntries = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+      // Keep at most 'maxEntries' in the client, evicting the least recently used, and invalidate on server writes
+      Configuration configuration = new ConfigurationBuilder().marshaller(new ProtoStreamMarshaller())
+            .nearCache().mode(NearCacheMode.INVALIDATED).maxEntries(maxEntries)
+            .build();
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(configuration);
+      MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress("localhost", 11214));
+      Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
+
+      registerSchema(remoteCacheManager);
+
+      String cacheName = "indexed";
+      RemoteCache<String, CryptoCurrency> remoteCache = remoteCacheManager.getCache(cacheName);
+
+      // Write from Hot Rod and read it back, which populates the near cache
+      CryptoCurrency bitcoin = new CryptoCurrency("Bitcoin", 1);
+      long start = System.nanoTime();
+      remoteCache.put("BTC", bitcoin);
+      logAction(WRITE, cacheName, "BTC", bitcoin, HOT_ROD, start);
+
+      start = System.nanoTime();
+      CryptoCurrency read = remoteCache.get("BTC");
+      logAction(READ, cacheName, "BTC", read, HOT_ROD, start);
+
+      start = System.nanoTime();
+      int reads = 100_000;
+      for (int i = 0; i < reads; i++) {
+         remoteCache.get("BTC");
+      }
+      System.out.printf("Average read from the near cache: %d ns%n", (System.nanoTime() - start) / reads);
+
+      // Write from REST: the near cache must not serve the old rank
+      String json = "{\"_type\": \"CryptoCurrency\",\"description\": \"Bitcoin\",\"rank\": 2}";
+      start = System.nanoTime();
+      requestExecutor.execute(Request.Post(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "BTC"))
+            .bodyString(json, ContentType.APPLICATION_JSON)).discardContent();
+      logAction(WRITE, cacheName, "BTC", json, REST, start);
+      awaitValue(remoteCache, "BTC", new CryptoCurrency("Bitcoin", 2));
+
+      // Write from memcached: same check
+      json = "{\"_type\": \"CryptoCurrency\",\"description\": \"Bitcoin\",\"rank\": 3}";
+      start = System.nanoTime();
+      memcachedClient.set("BTC", -1, json).get();
+      logAction(WRITE, cacheName, "BTC", json, MEMCACHED, start);
+      awaitValue(remoteCache, "BTC", new CryptoCurrency("Bitcoin", 3));
+
+      // Removal from REST
+      requestExecutor.execute(Request.Delete(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "BTC"))).discardContent();
+      awaitValue(remoteCache, "BTC", null);
+
+      printMetrics();
+
+      remoteCacheManager.stop();
+      memcachedClient.shutdown();
+   }
+
+   /**
+    * Invalidations are delivered asynchronously, so wait for them instead of reading only once.
+    */
+   private static void awaitValue(RemoteCache<String, CryptoCurrency> remoteCache, String key, CryptoCurrency expected) throws InterruptedException {
+      long start = System.nanoTime();
+      long deadline = start + TimeUnit.MILLISECONDS.toNanos(INVALIDATION_TIMEOUT_MS);
+      long readStart = start;
+      CryptoCurrency value = remoteCache.get(key);
+      while (expected == null ? value != null : !expected.equals(value)) {
+         if (System.nanoTime() > deadline) {
+            throw new IllegalStateException("Near cache still returns " + value + " for '" + key + "' instead of " + expected);
+         }
+         Thread.sleep(1);
+         readStart = System.nanoTime();
+         value = remoteCache.get(key);
+      }
+      logAction(READ, remoteCache.getName(), key, value, HOT_ROD, readStart);
+      System.out.printf("Near cache invalidated after %d ms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+   }
+}
@@ -0,0 +1,134 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.util.Arrays;
+
+import org.infinispan.client.hotrod.DataFormat;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.commons.dataconversion.MediaType;
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.commons.io.ByteBufferImpl;
+import org.infinispan.commons.marshall.AbstractMarshaller;
+
+/**
+ * Fixed-width text encoding of numeric keys that Hot Rod, REST and memcached all read the same way, with no
+ * <code>Key-Content-Type</code> header on REST and no Java serialization of the keys.
+ * <p>
+ * An int is encoded as {@value #INT_WIDTH} ASCII characters and a long as {@value #LONG_WIDTH}, six bits per character
+ * from an URL and memcached safe alphabet. The encoding keeps the numeric order, negative numbers included. REST and
+ * memcached use {@link #encode(long)} as the key; Hot Rod sends the same bytes as <code>text/plain</code> through
+ * {@link #withNumericKeys(RemoteCache)}, so the server converts them exactly as the keys of the other two endpoints.
+ */
+final class NumericKeys {
+
+   static final int INT_WIDTH = 6;
+   static final int LONG_WIDTH = 11;
+
+   private static final byte[] ALPHABET = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz".getBytes(US_ASCII);
+   private static final byte[] VALUES = new byte[128];
+
+   static {
+      Arrays.fill(VALUES, (byte) -1);
+      for (int i = 0; i < ALPHABET.length; i++) {
+         VALUES[ALPHABET[i]] = (byte) i;
+      }
+   }
+
+   private NumericKeys() {
+   }
+
+   static String encode(int id) {
+      return new String(toBytes(id), US_ASCII);
+   }
+
+   static String encode(long id) {
+      return new String(toBytes(id), US_ASCII);
+   }
+
+   /**
+    * Decodes a key of either width, as an {@link Integer} or a {@link Long} depending on its width.
+    */
+   static Number decode(String key) {
+      return fromBytes(key.getBytes(US_ASCII), 0, key.length());
+   }
+
+   static byte[] toBytes(int id) {
+      // Flipping the sign bit orders negative numbers before positive ones
+      return toBytes((id ^ Integer.MIN_VALUE) & 0xFFFFFFFFL, INT_WIDTH);
+   }
+
+   static byte[] toBytes(long id) {
+      return toBytes(id ^ Long.MIN_VALUE, LONG_WIDTH);
+   }
+
+   private static byte[] toBytes(long bits, int width) {
+      byte[] bytes = new byte[width];
+      for (int i = width - 1; i >= 0; i--) {
+         bytes[i] = ALPHABET[(int) (bits & 0x3F)];
+         bits >>>= 6;
+      }
+      return bytes;
+   }
+
+   /**
+    * The {@link Integer} of a key {@value #INT_WIDTH} characters wide, or the {@link Long} of a key {@value #LONG_WIDTH}
+    * characters wide, so that a key read back is encoded to the same bytes when written again.
+    */
+   static Number fromBytes(byte[] bytes, int offset, int length) {
+      if (length != INT_WIDTH && length != LONG_WIDTH) {
+         throw new IllegalArgumentException("Not a numeric key: " + new String(bytes, offset, length, US_ASCII));
+      }
+      long bits = 0;
+      for (int i = offset; i < offset + length; i++) {
+         byte value = bytes[i] < 0 ? -1 : VALUES[bytes[i]];
+         if (value < 0) {
+            throw new IllegalArgumentException("Not a numeric key: " + new String(bytes, offset, length, US_ASCII));
+         }
+         bits = bits << 6 | value;
+      }
+      if (length == INT_WIDTH) {
+         return Integer.valueOf((int) bits ^ Integer.MIN_VALUE);
+      }
+      return Long.valueOf(bits ^ Long.MIN_VALUE);
+   }
+
+   /**
+    * A view of the cache with {@link Integer} or {@link Long} keys, sent as their fixed-width text. Keys read back, e.g.
+    * when iterating, have the type they were written with, as long as they were written by this view or with
+    * {@link #encode(int)} or {@link #encode(long)}.
+    */
+   static <V> RemoteCache<Number, V> withNumericKeys(RemoteCache<?, V> cache) {
+      return cache.withDataFormat(DataFormat.builder().keyType(MediaType.TEXT_PLAIN).keyMarshaller(new KeyMarshaller()).build());
+   }
+
+   private static final class KeyMarshaller extends AbstractMarshaller {
+      @Override
+      protected ByteBuffer objectToBuffer(Object o, int estimatedSize) {
+         byte[] bytes;
+         if (o instanceof Integer) {
+            bytes = toBytes((int) o);
+         } else if (o instanceof Long) {
+            bytes = toBytes((long) o);
+         } else {
+            throw new IllegalArgumentException("Only Integer and Long keys are supported: " + o);
+         }
+         return new ByteBufferImpl(bytes, 0, bytes.length);
+      }
+
+      @Override
+      public Object objectFromByteBuffer(byte[] buf, int offset, int length) {
+         return fromBytes(buf, offset, length);
+      }
+
+      @Override
+      public boolean isMarshallable(Object o) {
+         return o instanceof Integer || o instanceof Long;
+      }
+
+      @Override
+      public MediaType mediaType() {
+         return MediaType.TEXT_PLAIN;
+      }
+   }
+}
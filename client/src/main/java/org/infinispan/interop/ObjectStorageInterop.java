@@ -9,8 +9,12 @@ import static org.infinispan.interop.Utils.Endpoint.HOT_ROD;
 import static org.infinispan.interop.Utils.Endpoint.MEMCACHED;
 import static org.infinispan.interop.Utils.Endpoint.REST;
 import static org.infinispan.interop.Utils.logAction;
+import static org.infinispan.interop.Utils.printMetrics;
+import static org.infinispan.interop.Utils.withNearCache;
+import static org.infinispan.interop.Utils.withRouting;
 
 import java.net.InetSocketAddress;
+import java.util.regex.Pattern;
 
 import org.apache.http.StatusLine;
 import org.apache.http.client.fluent.Executor;
@@ -29,7 +33,9 @@ import net.spy.memcached.MemcachedClient;
 public class ObjectStorageInterop {
 
    public static void main(String[] args) throws Exception {
-      Configuration configuration = new ConfigurationBuilder().build();
+      // Only CryptoCurrency, besides the primitive wrappers and Strings, is deserialized from the server
+      Configuration configuration = withNearCache(withRouting(new ConfigurationBuilder())
+            .addJavaSerialWhiteList(Pattern.quote(CryptoCurrency.class.getName()))).build();
       RemoteCacheManager remoteCacheManager = new RemoteCacheManager(configuration);
       MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress("localhost", 11213));
 
@@ -43,60 +49,71 @@ public class ObjectStorageInterop {
       CryptoCurrency litecoin = new CryptoCurrency("Litecoin", 2);
       CryptoCurrency dogecoin = new CryptoCurrency("Dogecoin", 100);
 
+      long start = System.nanoTime();
       remoteCache.put("BTC", bitcoin);
-      logAction(WRITE, "BTC", bitcoin, HOT_ROD);
+      logAction(WRITE, cacheName, "BTC", bitcoin, HOT_ROD, start);
 
+      start = System.nanoTime();
       remoteCache.put("LTC", litecoin);
-      logAction(WRITE, "LTC", litecoin, HOT_ROD);
+      logAction(WRITE, cacheName, "LTC", litecoin, HOT_ROD, start);
 
+      start = System.nanoTime();
       remoteCache.put("DOGE", dogecoin);
-      logAction(WRITE, "DOGE", dogecoin, HOT_ROD);
+      logAction(WRITE, cacheName, "DOGE", dogecoin, HOT_ROD, start);
 
       System.out.println("Cache size after insertion = " + remoteCache.size());
 
       Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
 
       // Read from REST as JSON
+      start = System.nanoTime();
       String response = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "BTC"))
                   .addHeader(ACCEPT, APPLICATION_JSON_TYPE))
             .returnContent().asString();
 
-      logAction(READ, "BTC", response, REST);
+      logAction(READ, cacheName, "BTC", response, REST, start);
 
       // Write from REST in JSON format
       String json = "{\"_type\":\"org.infinispan.interop.CryptoCurrency\",\"description\":\"Monero\",\"rank\":12}";
+      start = System.nanoTime();
       StatusLine status = requestExecutor.execute(
             Request.Post(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "XMR"))
                   .bodyString(json, ContentType.APPLICATION_JSON))
             .returnResponse().getStatusLine();
 
-      logAction(WRITE, "XMR", json, REST);
+      logAction(WRITE, cacheName, "XMR", json, REST, start);
       System.out.println("Status code: " + status);
 
       // Read from Hot Rod the data inserted via REST
+      start = System.nanoTime();
       CryptoCurrency xmr = remoteCache.get("XMR");
-      logAction(READ, "XMR", xmr, HOT_ROD);
+      logAction(READ, cacheName, "XMR", xmr, HOT_ROD, start);
 
       // Read an entry from memcached. The memcached-connector has client-encoding as 'application/json'
+      start = System.nanoTime();
       Object btc = memcachedClient.get("BTC");
-      logAction(READ, "BTC", btc, MEMCACHED);
+      logAction(READ, cacheName, "BTC", btc, MEMCACHED, start);
 
       // Write an entry from memcached
       String value = "{\"_type\":\"org.infinispan.interop.CryptoCurrency\",\"description\":\"Bitcoin Gold\",\"rank\":4999}";
+      start = System.nanoTime();
       memcachedClient.set("BTG", -1, value.getBytes(UTF_8)).get();
-      logAction(WRITE, "BTG", value, MEMCACHED);
+      logAction(WRITE, cacheName, "BTG", value, MEMCACHED, start);
 
       // Read value inserted from memcached using HotRod and REST
+      start = System.nanoTime();
       CryptoCurrency btg = remoteCache.get("BTG");
-      logAction(READ, "BTG", btg, HOT_ROD);
+      logAction(READ, cacheName, "BTG", btg, HOT_ROD, start);
 
+      start = System.nanoTime();
       response = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "BTG"))
                   .addHeader(ACCEPT, APPLICATION_JSON_TYPE))
             .returnContent().asString();
-      logAction(READ, "BTG", response, REST);
+      logAction(READ, cacheName, "BTG", response, REST, start);
 
+      printMetrics();
 
       remoteCache.stop();
       memcachedClient.shutdown();
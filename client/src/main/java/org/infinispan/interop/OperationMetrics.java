@@ -0,0 +1,264 @@
+package org.infinispan.interop;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.infinispan.interop.Utils.Action;
+import org.infinispan.interop.Utils.Endpoint;
+
+/**
+ * Latency, payload size and outcome of every operation, per endpoint, action and cache.
+ * <p>
+ * Recording does not allocate nor lock: counters are {@link LongAdder}s and latencies go to an HdrHistogram
+ * {@link Recorder}. The values are collected as interval {@link Snapshot}s, either on demand or periodically, and the
+ * last snapshot can be exposed over JMX.
+ */
+public final class OperationMetrics {
+
+   private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+   private final Map<Endpoint, Map<Action, ConcurrentMap<String, OperationStats>>> stats = new EnumMap<>(Endpoint.class);
+
+   public OperationMetrics() {
+      for (Endpoint endpoint : Endpoint.values()) {
+         Map<Action, ConcurrentMap<String, OperationStats>> byAction = new EnumMap<>(Action.class);
+         for (Action action : Action.values()) {
+            byAction.put(action, new ConcurrentHashMap<>());
+         }
+         stats.put(endpoint, byAction);
+      }
+   }
+
+   /**
+    * The statistics of an operation. Callers on a hot path should keep the returned instance instead of looking it up on
+    * every operation.
+    */
+   OperationStats stats(Endpoint endpoint, Action action, String cacheName) {
+      ConcurrentMap<String, OperationStats> byCache = stats.get(endpoint).get(action);
+      OperationStats operationStats = byCache.get(cacheName);
+      if (operationStats == null) {
+         operationStats = byCache.computeIfAbsent(cacheName, name -> new OperationStats(endpoint, action, name));
+      }
+      return operationStats;
+   }
+
+   /**
+    * Collects the values recorded since the previous snapshot, skipping the operations that were not used.
+    */
+   public synchronized List<Snapshot> snapshot() {
+      List<Snapshot> snapshots = new ArrayList<>();
+      for (Map<Action, ConcurrentMap<String, OperationStats>> byAction : stats.values()) {
+         for (ConcurrentMap<String, OperationStats> byCache : byAction.values()) {
+            for (OperationStats operationStats : byCache.values()) {
+               Snapshot snapshot = operationStats.snapshot();
+               if (snapshot.getOperations() > 0 || snapshot.getErrors() > 0) {
+                  snapshots.add(snapshot);
+               }
+            }
+         }
+      }
+      return snapshots;
+   }
+
+   /**
+    * Takes a snapshot every <code>period</code> and hands it to the consumer.
+    */
+   public ScheduledFuture<?> reportEvery(long period, TimeUnit unit, ScheduledExecutorService executor, Consumer<List<Snapshot>> consumer) {
+      return executor.scheduleAtFixedRate(() -> consumer.accept(snapshot()), period, period, unit);
+   }
+
+   /**
+    * Registers one MBean per operation under <code>org.infinispan.interop:type=Operation</code>, exposing the values of
+    * the last snapshot.
+    */
+   public void registerMBeans() throws JMException {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      for (Map<Action, ConcurrentMap<String, OperationStats>> byAction : stats.values()) {
+         for (ConcurrentMap<String, OperationStats> byCache : byAction.values()) {
+            for (OperationStats operationStats : byCache.values()) {
+               ObjectName name = new ObjectName(String.format("org.infinispan.interop:type=Operation,endpoint=%s,action=%s,cache=%s",
+                     operationStats.endpoint, operationStats.action, ObjectName.quote(operationStats.cacheName)));
+               if (!mBeanServer.isRegistered(name)) {
+                  mBeanServer.registerMBean(operationStats, name);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Attributes exposed over JMX, taken from the last snapshot of the operation.
+    */
+   public interface OperationStatsMXBean {
+      long getOperations();
+
+      long getErrors();
+
+      long getPayloadBytes();
+
+      long getLatencyP50Micros();
+
+      long getLatencyP99Micros();
+
+      long getLatencyMaxMicros();
+   }
+
+   public static final class OperationStats implements OperationStatsMXBean {
+      private final Endpoint endpoint;
+      private final Action action;
+      private final String cacheName;
+      private final Recorder latencies = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+      private final LongAdder errors = new LongAdder();
+      private final LongAdder payloadBytes = new LongAdder();
+      private Histogram interval;
+      // Totals at the previous snapshot: resetting the adders would drop the values added while they are summed
+      private long errorsTotal;
+      private long payloadBytesTotal;
+      private volatile Snapshot last;
+
+      OperationStats(Endpoint endpoint, Action action, String cacheName) {
+         this.endpoint = endpoint;
+         this.action = action;
+         this.cacheName = cacheName;
+         this.last = new Snapshot(endpoint, action, cacheName, 0, 0, 0, 0, 0, 0);
+      }
+
+      /**
+       * Records one operation; failed operations count as errors and do not contribute to the latencies.
+       */
+      public void record(long nanos, long payloadBytes, boolean success) {
+         if (success) {
+            latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS));
+            this.payloadBytes.add(payloadBytes);
+         } else {
+            errors.increment();
+         }
+      }
+
+      Snapshot snapshot() {
+         interval = latencies.getIntervalHistogram(interval);
+         long errorsSum = errors.sum();
+         long payloadBytesSum = payloadBytes.sum();
+         last = new Snapshot(endpoint, action, cacheName, interval.getTotalCount(), errorsSum - errorsTotal, payloadBytesSum - payloadBytesTotal,
+               interval.getValueAtPercentile(50), interval.getValueAtPercentile(99), interval.getMaxValue());
+         errorsTotal = errorsSum;
+         payloadBytesTotal = payloadBytesSum;
+         return last;
+      }
+
+      @Override
+      public long getOperations() {
+         return last.operations;
+      }
+
+      @Override
+      public long getErrors() {
+         return last.errors;
+      }
+
+      @Override
+      public long getPayloadBytes() {
+         return last.payloadBytes;
+      }
+
+      @Override
+      public long getLatencyP50Micros() {
+         return last.p50;
+      }
+
+      @Override
+      public long getLatencyP99Micros() {
+         return last.p99;
+      }
+
+      @Override
+      public long getLatencyMaxMicros() {
+         return last.max;
+      }
+   }
+
+   /**
+    * Values of an operation over one interval. Latencies are in microseconds.
+    */
+   public static final class Snapshot {
+      private final Endpoint endpoint;
+      private final Action action;
+      private final String cacheName;
+      private final long operations;
+      private final long errors;
+      private final long payloadBytes;
+      private final long p50;
+      private final long p99;
+      private final long max;
+
+      Snapshot(Endpoint endpoint, Action action, String cacheName, long operations, long errors, long payloadBytes, long p50, long p99, long max) {
+         this.endpoint = endpoint;
+         this.action = action;
+         this.cacheName = cacheName;
+         this.operations = operations;
+         this.errors = errors;
+         this.payloadBytes = payloadBytes;
+         this.p50 = p50;
+         this.p99 = p99;
+         this.max = max;
+      }
+
+      Endpoint getEndpoint() {
+         return endpoint;
+      }
+
+      Action getAction() {
+         return action;
+      }
+
+      public String getCacheName() {
+         return cacheName;
+      }
+
+      public long getOperations() {
+         return operations;
+      }
+
+      public long getErrors() {
+         return errors;
+      }
+
+      public long getPayloadBytes() {
+         return payloadBytes;
+      }
+
+      public long getP50() {
+         return p50;
+      }
+
+      public long getP99() {
+         return p99;
+      }
+
+      public long getMax() {
+         return max;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%-9s %-5s %-22s %,10d ops %,6d errors %,12d bytes  p50=%,dus p99=%,dus max=%,dus",
+               endpoint, action, cacheName, operations, errors, payloadBytes, p50, p99, max);
+      }
+   }
+}
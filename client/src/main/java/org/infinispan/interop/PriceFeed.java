@@ -0,0 +1,272 @@
+package org.infinispan.interop;
+
+import static org.infinispan.interop.Utils.registerSchema;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.Search;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.client.hotrod.marshall.ProtoStreamMarshaller;
+import org.infinispan.query.api.continuous.ContinuousQuery;
+import org.infinispan.query.api.continuous.ContinuousQueryListener;
+
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * A local view of the {@link CryptoCurrency} entries matching a continuous query, kept up to date by the join, update
+ * and leave events the server pushes when entries are written from any endpoint, instead of re-running the query.
+ * <p>
+ * The server sends the entries matching the query when the feed starts, and then one event per change. Events are not
+ * applied one by one: they are merged per key, so that a key updated many times between two batches is applied once
+ * with its last value, and a single thread applies them to the view in batches, at most one every
+ * <code>batchInterval</code>. When <code>maxPending</code> keys are waiting, new keys block the Hot Rod event thread
+ * until the next batch is applied, which stops the client reading events and pushes back to the server.
+ */
+public class PriceFeed implements AutoCloseable {
+
+   private final ContinuousQuery<String, CryptoCurrency> continuousQuery;
+   private final int maxPending;
+   private final long batchIntervalMillis;
+   private final Map<String, CryptoCurrency> view = new ConcurrentHashMap<>();
+   private final Listener listener = new Listener();
+
+   // Last value of each key changed since the previous batch, null when it left the query
+   private Map<String, CryptoCurrency> pending = new LinkedHashMap<>();
+   private int pendingEvents;
+   private boolean closed;
+   private Thread applier;
+
+   public PriceFeed(RemoteCache<String, CryptoCurrency> remoteCache, int maxPending, long batchInterval, TimeUnit unit) {
+      if (maxPending <= 0) {
+         throw new IllegalArgumentException("maxPending must be positive");
+      }
+      this.continuousQuery = Search.getContinuousQuery(remoteCache);
+      this.maxPending = maxPending;
+      this.batchIntervalMillis = unit.toMillis(batchInterval);
+   }
+
+   /**
+    * Starts following the query, e.g. <code>FROM CryptoCurrency c WHERE c.rank &lt; :maxRank</code>. The
+    * <code>onBatch</code> callback is invoked after each batch is applied, from the thread applying them, and should
+    * return quickly.
+    */
+   public synchronized void start(String query, Map<String, Object> parameters, Consumer<Batch> onBatch) {
+      if (applier != null) {
+         throw new IllegalStateException("Already started");
+      }
+      applier = new Thread(() -> apply(onBatch), "price-feed");
+      applier.setDaemon(true);
+      applier.start();
+      continuousQuery.addContinuousQueryListener(query, parameters, listener);
+   }
+
+   /**
+    * The entries currently matching the query, by key.
+    */
+   public Map<String, CryptoCurrency> view() {
+      return Collections.unmodifiableMap(view);
+   }
+
+   /**
+    * The entries currently matching the query, by rank.
+    */
+   public List<CryptoCurrency> byRank() {
+      List<CryptoCurrency> byRank = new ArrayList<>(view.values());
+      byRank.sort(Comparator.comparingInt(CryptoCurrency::getRank));
+      return byRank;
+   }
+
+   @Override
+   public void close() {
+      continuousQuery.removeContinuousQueryListener(listener);
+      Thread applier;
+      synchronized (this) {
+         closed = true;
+         notifyAll();
+         applier = this.applier;
+      }
+      if (applier != null) {
+         try {
+            applier.join();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   private synchronized void offer(String key, CryptoCurrency value) {
+      while (pending.size() >= maxPending && !pending.containsKey(key) && !closed) {
+         try {
+            wait();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+         }
+      }
+      boolean wasEmpty = pending.isEmpty();
+      pending.put(key, value);
+      pendingEvents++;
+      if (wasEmpty) {
+         notifyAll();
+      }
+   }
+
+   private void apply(Consumer<Batch> onBatch) {
+      try {
+         while (true) {
+            Map<String, CryptoCurrency> changes;
+            int events;
+            synchronized (this) {
+               while (pending.isEmpty() && !closed) {
+                  wait();
+               }
+               if (closed) {
+                  return;
+               }
+               changes = pending;
+               events = pendingEvents;
+               pending = new LinkedHashMap<>();
+               pendingEvents = 0;
+               // Unblocks the event thread if it was waiting for room
+               notifyAll();
+            }
+
+            Map<String, CryptoCurrency> updated = new HashMap<>();
+            Set<String> left = new HashSet<>();
+            changes.forEach((key, value) -> {
+               if (value == null) {
+                  if (view.remove(key) != null) {
+                     left.add(key);
+                  }
+               } else {
+                  view.put(key, value);
+                  updated.put(key, value);
+               }
+            });
+            onBatch.accept(new Batch(events, updated, left));
+
+            // Lets events for the same keys accumulate, so they are merged before the next batch
+            Thread.sleep(batchIntervalMillis);
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private final class Listener implements ContinuousQueryListener<String, CryptoCurrency> {
+      @Override
+      public void resultJoining(String key, CryptoCurrency value) {
+         offer(key, value);
+      }
+
+      @Override
+      public void resultUpdated(String key, CryptoCurrency value) {
+         offer(key, value);
+      }
+
+      @Override
+      public void resultLeaving(String key) {
+         offer(key, null);
+      }
+   }
+
+   /**
+    * The changes applied to the view at once.
+    */
+   public static final class Batch {
+      private final int events;
+      private final Map<String, CryptoCurrency> updated;
+      private final Set<String> left;
+
+      Batch(int events, Map<String, CryptoCurrency> updated, Set<String> left) {
+         this.events = events;
+         this.updated = updated;
+         this.left = left;
+      }
+
+      /**
+       * The number of events received for this batch, more than the keys changed when some of them were merged.
+       */
+      public int getEvents() {
+         return events;
+      }
+
+      /**
+       * The entries that joined the query or were updated, with their last value.
+       */
+      public Map<String, CryptoCurrency> getUpdated() {
+         return updated;
+      }
+
+      /**
+       * The keys that left the query, either removed or no longer matching it.
+       */
+      public Set<String> getLeft() {
+         return left;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%d events: %d joined or updated, %d left", events, updated.size(), left.size());
+      }
+   }
+
+   /**
+    * Follows the top 10 of the 'indexed' cache while it is written from the three endpoints.
+    */
+   public static void main(String[] args) throws Exception {
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder().marshaller(new ProtoStreamMarshaller()).build());
+      registerSchema(remoteCacheManager);
+      RemoteCache<String, CryptoCurrency> remoteCache = remoteCacheManager.getCache("indexed");
+      MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress("localhost", 11214));
+      Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
+
+      try (PriceFeed feed = new PriceFeed(remoteCache, 10_000, 100, TimeUnit.MILLISECONDS)) {
+         feed.start("FROM CryptoCurrency c WHERE c.rank < :maxRank", Collections.singletonMap("maxRank", 10),
+               batch -> System.out.println("Applied " + batch));
+
+         // Joins from Hot Rod, REST and memcached
+         remoteCache.put("BTC", new CryptoCurrency("Bitcoin", 1));
+         requestExecutor.execute(Request.Post("http://localhost:8080/rest/indexed/XRP")
+               .bodyString("{\"_type\":\"CryptoCurrency\",\"description\":\"Ripple\",\"rank\":3}", ContentType.APPLICATION_JSON))
+               .discardContent();
+         memcachedClient.set("ETH", -1, "{\"_type\":\"CryptoCurrency\",\"description\":\"Ethereum\",\"rank\":2}").get();
+
+         // A burst of updates to the same keys is merged before being applied
+         CompletableFuture<?>[] updates = new CompletableFuture<?>[1000];
+         for (int i = 0; i < updates.length; i++) {
+            updates[i] = remoteCache.putAsync("LTC", new CryptoCurrency("Litecoin", 4 + i % 5));
+         }
+         CompletableFuture.allOf(updates).join();
+         remoteCache.put("LTC", new CryptoCurrency("Litecoin", 5));
+
+         // Leaves: one falls out of the top 10, another one is removed
+         remoteCache.put("XRP", new CryptoCurrency("Ripple", 12));
+         memcachedClient.delete("ETH").get();
+
+         Thread.sleep(1000);
+         System.out.println("Top 10: " + feed.byRank());
+      } finally {
+         memcachedClient.shutdown();
+         remoteCacheManager.stop();
+      }
+   }
+}
@@ -7,9 +7,15 @@ import static org.infinispan.interop.Utils.Endpoint.HOT_ROD;
 import static org.infinispan.interop.Utils.Endpoint.MEMCACHED;
 import static org.infinispan.interop.Utils.Endpoint.REST;
 import static org.infinispan.interop.Utils.logAction;
+import static org.infinispan.interop.Utils.printMetrics;
+import static org.infinispan.interop.Utils.registerSchema;
+import static org.infinispan.interop.Utils.withNearCache;
+import static org.infinispan.interop.Utils.withRouting;
 
 import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.http.StatusLine;
 import org.apache.http.client.fluent.Executor;
@@ -21,12 +27,8 @@ import org.infinispan.client.hotrod.Search;
 import org.infinispan.client.hotrod.configuration.Configuration;
 import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
 import org.infinispan.client.hotrod.marshall.ProtoStreamMarshaller;
-import org.infinispan.protostream.FileDescriptorSource;
-import org.infinispan.protostream.SerializationContext;
-import org.infinispan.protostream.annotations.ProtoSchemaBuilder;
 import org.infinispan.query.dsl.Query;
 import org.infinispan.query.dsl.QueryFactory;
-import org.infinispan.query.remote.client.ProtobufMetadataManagerConstants;
 
 import net.spy.memcached.MemcachedClient;
 
@@ -36,24 +38,16 @@ import net.spy.memcached.MemcachedClient;
 public class ProtobufInterop {
 
    public static void main(String[] args) throws Exception {
-      Configuration configuration = new ConfigurationBuilder().marshaller(new ProtoStreamMarshaller()).build();
+      Configuration configuration = withNearCache(withRouting(new ConfigurationBuilder()).marshaller(new ProtoStreamMarshaller())).build();
       RemoteCacheManager remoteCacheManager = new RemoteCacheManager(configuration);
 
       MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress("localhost", 11214));
 
-      SerializationContext serializationContext = ProtoStreamMarshaller.getSerializationContext(remoteCacheManager);
-
       // Obtain the 'indexed' cache from the server
       String cacheName = "indexed";
 
-      // Use the proto schema builder to generate the proto file from the annotated entity class.
-      ProtoSchemaBuilder protoSchemaBuilder = new ProtoSchemaBuilder();
-      String schemaFile = protoSchemaBuilder.fileName("crypto.proto").addClass(CryptoCurrency.class).build(serializationContext);
-
-      // Registers the schema in the client and in the server.
-      serializationContext.registerProtoFiles(FileDescriptorSource.fromString("crypto.proto", schemaFile));
-      RemoteCache<String, String> metadataCache = remoteCacheManager.getCache(ProtobufMetadataManagerConstants.PROTOBUF_METADATA_CACHE_NAME);
-      metadataCache.put("crypto.proto", schemaFile);
+      // Loads the schema generated at build time from the classpath, registers it in the client, and in the server only when it changed.
+      registerSchema(remoteCacheManager);
 
       RemoteCache<String, CryptoCurrency> remoteCache = remoteCacheManager.getCache(cacheName);
 
@@ -62,57 +56,75 @@ public class ProtobufInterop {
       CryptoCurrency litecoin = new CryptoCurrency("Litecoin", 2);
       CryptoCurrency dogecoin = new CryptoCurrency("Dogecoin", 100);
 
+      long start = System.nanoTime();
       remoteCache.put("BTC", bitcoin);
-      logAction(WRITE, "BTC", bitcoin, HOT_ROD);
+      logAction(WRITE, cacheName, "BTC", bitcoin, HOT_ROD, start);
 
+      start = System.nanoTime();
       remoteCache.put("LTC", litecoin);
-      logAction(WRITE, "LTC", litecoin, HOT_ROD);
+      logAction(WRITE, cacheName, "LTC", litecoin, HOT_ROD, start);
 
+      start = System.nanoTime();
       remoteCache.put("DOGE", dogecoin);
-      logAction(WRITE, "DOGE", dogecoin, HOT_ROD);
+      logAction(WRITE, cacheName, "DOGE", dogecoin, HOT_ROD, start);
 
       System.out.println("Cache size after insertion from Hot Rod: " + remoteCache.size());
 
       // Read from REST
       Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
 
+      start = System.nanoTime();
       String response = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "BTC")))
             .returnContent().asString();
 
-      logAction(READ, "BTC", response, REST);
+      logAction(READ, cacheName, "BTC", response, REST, start);
 
       // Write from REST using JSON format
       String newEntry = "{\"_type\": \"CryptoCurrency\",\"description\": \"Tether\",\"rank\": 4}";
+      start = System.nanoTime();
       StatusLine status = requestExecutor.execute(
             Request.Post(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "USDT"))
                   .bodyString(newEntry, ContentType.APPLICATION_JSON))
             .returnResponse().getStatusLine();
-      logAction(WRITE, "USDT", newEntry, REST);
+      logAction(WRITE, cacheName, "USDT", newEntry, REST, start);
       System.out.println("Status = " + status);
 
       // Read from Hot Rod
+      start = System.nanoTime();
       CryptoCurrency usdt = remoteCache.get("USDT");
-      logAction(READ, "USDT", usdt, HOT_ROD);
+      logAction(READ, cacheName, "USDT", usdt, HOT_ROD, start);
 
-      // Query from REST
+      // Query from REST, limited to the first page of results. Use the QueryPager to go through all of them.
+      start = System.nanoTime();
       String queryResponse = requestExecutor
-            .execute(Request.Get("http://localhost:8080/rest/indexed?action=search&query=from%20CryptoCurrency%20order%20by%20rank"))
+            .execute(Request.Get("http://localhost:8080/rest/indexed?action=search&query=from%20CryptoCurrency%20order%20by%20rank&max_results=10"))
             .returnContent().asString();
-      logAction(QUERY, "all elements sorted by rank", queryResponse, REST);
+      logAction(QUERY, cacheName, "all elements sorted by rank", queryResponse, REST, start);
 
       // Write entry from memcached. The memcached endopoint is configured with "client-encoding='application/json'" so that memcached clients
       // can use json UTF-8 content
       String eth = "{\"_type\": \"CryptoCurrency\",\"description\": \"Ethereum\",\"rank\": 7}";
+      start = System.nanoTime();
       memcachedClient.set("ETH", -1, eth).get();
-      logAction(WRITE, "ETH", eth, MEMCACHED);
+      logAction(WRITE, cacheName, "ETH", eth, MEMCACHED, start);
 
       // Query the newly inserted entry via Hot Rod
       QueryFactory queryFactory = Search.getQueryFactory(remoteCache);
       Query q = queryFactory.create("FROM CryptoCurrency c where description:'eth*'");
+      start = System.nanoTime();
       List<CryptoCurrency> results = q.list();
 
-      logAction(QUERY, "entry inserted from memcached", results.iterator().next(), HOT_ROD);
+      logAction(QUERY, cacheName, "entry inserted from memcached", results.iterator().next(), HOT_ROD, start);
+
+      // Page through the ranks only, 100 at a time, instead of fetching every entity at once
+      start = System.nanoTime();
+      try (Stream<Object[]> ranks = new QueryPager(100).stream(queryFactory, "select c.rank from CryptoCurrency c order by c.rank")) {
+         List<Object> rankList = ranks.map(row -> row[0]).collect(Collectors.toList());
+         logAction(QUERY, cacheName, "rank projection", rankList, HOT_ROD, start);
+      }
+
+      printMetrics();
 
       remoteCacheManager.stop();
       memcachedClient.shutdown();
@@ -0,0 +1,157 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.infinispan.interop.Utils.registerSchema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.Search;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.client.hotrod.marshall.ProtoStreamMarshaller;
+import org.infinispan.query.dsl.QueryFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Runs queries one page at a time, so that only a page of results is held in memory whatever the size of the result
+ * set.
+ * <p>
+ * Hot Rod results are returned as a lazy {@link Stream}: each page is fetched with <code>startOffset</code>/<code>maxResults</code>
+ * once the previous one has been consumed. Projections such as <code>select c.rank from CryptoCurrency c</code> return
+ * <code>Object[]</code> rows instead of full entities. REST results are copied hit by hit from the response to an
+ * {@link OutputStream}, one JSON document per line, without building the response in memory.
+ * <p>
+ * Pages are only consistent when the query has an <code>order by</code> clause.
+ */
+public class QueryPager {
+
+   private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+   private final int pageSize;
+
+   public QueryPager(int pageSize) {
+      if (pageSize <= 0) {
+         throw new IllegalArgumentException("pageSize must be positive");
+      }
+      this.pageSize = pageSize;
+   }
+
+   /**
+    * Streams the results of a Hot Rod query. Entities for queries and <code>Object[]</code> for projections.
+    */
+   public <T> Stream<T> stream(QueryFactory queryFactory, String query) {
+      Spliterator<T> pages = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+         private final Deque<T> page = new ArrayDeque<>(pageSize);
+         private long offset;
+         private boolean last;
+
+         @Override
+         public boolean tryAdvance(Consumer<? super T> action) {
+            if (page.isEmpty() && !last) {
+               List<T> results = queryFactory.create(query).startOffset(offset).maxResults(pageSize).list();
+               page.addAll(results);
+               offset += results.size();
+               last = results.size() < pageSize;
+            }
+            T next = page.poll();
+            if (next == null) {
+               return false;
+            }
+            action.accept(next);
+            return true;
+         }
+      };
+      return StreamSupport.stream(pages, false);
+   }
+
+   /**
+    * Writes the hits of a REST query to <code>out</code> as newline delimited JSON, one page request at a time. The
+    * stream is flushed after every page and is not closed.
+    *
+    * @return the number of hits written.
+    */
+   public long writeTo(Executor requestExecutor, String cacheName, String query, OutputStream out) throws IOException {
+      String url = String.format("http://%s:%d/rest/%s?action=search&query=%s&max_results=%d", "localhost", 8080, cacheName,
+            URLEncoder.encode(query, UTF_8), pageSize);
+      try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+         generator.setRootValueSeparator(null);
+         long total = 0;
+         int hits;
+         do {
+            hits = requestExecutor.execute(Request.Get(url + "&offset=" + total)).handleResponse(response -> {
+               if (response.getStatusLine().getStatusCode() >= 300) {
+                  throw new HttpResponseException(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
+               }
+               HttpEntity entity = response.getEntity();
+               try (InputStream content = entity.getContent()) {
+                  return copyHits(content, generator);
+               }
+            });
+            total += hits;
+         } while (hits == pageSize);
+         return total;
+      }
+   }
+
+   /**
+    * Copies every <code>hits[].hit</code> of a search response token by token.
+    */
+   private static int copyHits(InputStream content, JsonGenerator generator) throws IOException {
+      int hits = 0;
+      try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+         while (parser.nextToken() != null) {
+            if (parser.currentToken() == JsonToken.FIELD_NAME && "hit".equals(parser.getCurrentName())) {
+               parser.nextToken();
+               generator.copyCurrentStructure(parser);
+               generator.writeRaw('\n');
+               hits++;
+            }
+         }
+      }
+      generator.flush();
+      return hits;
+   }
+
+   /**
+    * Scans the 'indexed' cache with both endpoints. Arguments: page size (default 1000).
+    */
+   public static void main(String[] args) throws Exception {
+      int pageSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+      QueryPager pager = new QueryPager(pageSize);
+
+      RemoteCacheManager remoteCacheManager = new RemoteCacheManager(new ConfigurationBuilder().marshaller(new ProtoStreamMarshaller()).build());
+      registerSchema(remoteCacheManager);
+      RemoteCache<String, CryptoCurrency> remoteCache = remoteCacheManager.getCache("indexed");
+      QueryFactory queryFactory = Search.getQueryFactory(remoteCache);
+
+      // Only the ranks are sent and unmarshalled, not the whole entities
+      try (Stream<Object[]> ranks = pager.stream(queryFactory, "select c.rank from CryptoCurrency c order by c.rank")) {
+         System.out.println("Sum of ranks from Hot Rod: " + ranks.mapToLong(row -> ((Number) row[0]).longValue()).sum());
+      }
+
+      long hits = pager.writeTo(Executor.newInstance().auth("dev", "dev"), "indexed", "from CryptoCurrency order by rank", System.out);
+      System.out.println("Hits from REST: " + hits);
+
+      remoteCacheManager.stop();
+   }
+}
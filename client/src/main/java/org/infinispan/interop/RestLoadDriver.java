@@ -0,0 +1,91 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.entity.ContentType;
+
+/**
+ * Sustains a fixed number of concurrent REST reads from a single thread using the {@link AsyncRestClient}: a new GET is
+ * issued as soon as a permit is released by a completed one.
+ * <p>
+ * Arguments: concurrent requests (default 20000), connections (default 64), duration in seconds (default 30) and cache
+ * name (default 'string-cache').
+ */
+public class RestLoadDriver {
+
+   private static final int KEYS = 1000;
+   private static final int WRITE_BATCH = 100;
+
+   public static void main(String[] args) throws Exception {
+      int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+      int connections = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+      int durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+      String cacheName = args.length > 3 ? args[3] : "string-cache";
+
+      try (AsyncRestClient restClient = new AsyncRestClient("localhost", 8080, "dev", "dev", connections)) {
+         // Populate the keys that will be read, pipelining each batch of writes on one connection
+         List<CompletableFuture<List<Integer>>> writes = new ArrayList<>();
+         for (int i = 0; i < KEYS; i += WRITE_BATCH) {
+            Map<String, byte[]> batch = new LinkedHashMap<>();
+            for (int j = i; j < Math.min(i + WRITE_BATCH, KEYS); j++) {
+               batch.put("KEY-" + j, ("Value " + j).getBytes(UTF_8));
+            }
+            writes.add(restClient.postAll(cacheName, batch, ContentType.TEXT_PLAIN));
+         }
+         writes.forEach(CompletableFuture::join);
+
+         Semaphore inFlight = new Semaphore(concurrency);
+         LongAdder completed = new LongAdder();
+         LongAdder errors = new LongAdder();
+         AtomicReference<Throwable> lastError = new AtomicReference<>();
+
+         long start = System.nanoTime();
+         long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+         long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+         long lastCompleted = 0;
+         while (System.nanoTime() < end) {
+            if (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+               continue;
+            }
+            String key = "KEY-" + ThreadLocalRandom.current().nextInt(KEYS);
+            restClient.get(cacheName, key, null).whenComplete((value, throwable) -> {
+               if (throwable != null) {
+                  errors.increment();
+                  lastError.set(throwable);
+               } else {
+                  completed.increment();
+               }
+               inFlight.release();
+            });
+
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+               long total = completed.sum();
+               System.out.printf("%d reads/sec, %d in flight, %d errors%n", total - lastCompleted, concurrency - inFlight.availablePermits(), errors.sum());
+               lastCompleted = total;
+               nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+         }
+
+         // Drain the requests still in flight
+         inFlight.acquire(concurrency);
+         double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+         System.out.printf("Completed %d reads in %.1f s (%.0f reads/sec) with %d concurrent requests over %d connections, %d errors%n",
+               completed.sum(), seconds, completed.sum() / seconds, concurrency, connections, errors.sum());
+         if (lastError.get() != null) {
+            System.out.println("Last error: " + lastError.get());
+         }
+      }
+   }
+}
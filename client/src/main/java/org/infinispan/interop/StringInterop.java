@@ -7,7 +7,11 @@ import static org.infinispan.interop.Utils.Endpoint.HOT_ROD;
 import static org.infinispan.interop.Utils.Endpoint.MEMCACHED;
 import static org.infinispan.interop.Utils.Endpoint.REST;
 import static org.infinispan.interop.Utils.logAction;
+import static org.infinispan.interop.Utils.printMetrics;
+import static org.infinispan.interop.Utils.withNearCache;
+import static org.infinispan.interop.Utils.withRouting;
 
+import java.io.ByteArrayInputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 
@@ -28,7 +32,7 @@ import net.spy.memcached.MemcachedClient;
 public class StringInterop {
 
    public static void main(String[] args) throws Exception {
-      Configuration configuration = new ConfigurationBuilder().marshaller(new UTF8StringMarshaller()).build();
+      Configuration configuration = withNearCache(withRouting(new ConfigurationBuilder()).marshaller(new UTF8StringMarshaller())).build();
       RemoteCacheManager remoteCacheManager = new RemoteCacheManager(configuration);
       MemcachedClient memcachedClient = new MemcachedClient(new InetSocketAddress("localhost", 11211));
 
@@ -38,67 +42,91 @@ public class StringInterop {
       RemoteCache<String, String> cache = remoteCacheManager.getCache(cacheName);
 
       // Write from Hot Rod
+      long start = System.nanoTime();
       cache.put("BTC", "Bitcoin");
+      logAction(WRITE, cacheName, "BTC", "Bitcoin", HOT_ROD, start);
+
+      start = System.nanoTime();
       cache.put("LTC", "Litecoin");
+      logAction(WRITE, cacheName, "LTC", "Litecoin", HOT_ROD, start);
+
+      start = System.nanoTime();
       cache.put("DOG", "Dogecoin");
-      logAction(WRITE, "BTC", "Bitcoin", HOT_ROD);
-      logAction(WRITE, "LTC", "Litecoin", HOT_ROD);
-      logAction(WRITE, "DOG", "Dogecoin", HOT_ROD);
+      logAction(WRITE, cacheName, "DOG", "Dogecoin", HOT_ROD, start);
 
       System.out.println("Cache size after insertion from Hot Rod: " + cache.size());
 
       // Read from REST
       Executor requestExecutor = Executor.newInstance().auth("dev", "dev");
 
+      start = System.nanoTime();
       String response = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "BTC")))
             .returnContent().asString();
 
-      logAction(READ, "BTC", response, REST);
+      logAction(READ, cacheName, "BTC", response, REST, start);
 
       // Writing from REST with a different charset
       Charset shift_jis = Charset.forName("Shift_JIS");
       String content = "現金";
 
-      byte[] encoded = shift_jis.encode(content).array();
+      // Only the encoded bytes: Charset.encode(...).array() would return the whole, larger, backing array
+      byte[] encoded = content.getBytes(shift_jis);
 
+      start = System.nanoTime();
       requestExecutor.execute(Request.Post(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "ZEC"))
             .bodyByteArray(encoded)
             .addHeader("Content-Type", "text/plain; charset=" + shift_jis.displayName()));
-      logAction(WRITE, "ZEC", content, REST);
+      logAction(WRITE, cacheName, "ZEC", content, REST, start);
+
+      // Large legacy encoded payloads can be converted to UTF-8 while they are sent, in small chunks
+      start = System.nanoTime();
+      requestExecutor.execute(Request.Post(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "XMR"))
+            .body(CharsetTranscoder.entity(new ByteArrayInputStream(encoded), shift_jis, "text/plain")));
+      logAction(WRITE, cacheName, "XMR", content, REST, start);
 
 
       // Reading as UTF-8 (this is the default charset)
+      start = System.nanoTime();
       byte[] bytes = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "ZEC")))
             .returnContent().asBytes();
-      logAction(READ, "ZEC", new String(bytes, UTF_8), REST);
+      logAction(READ, cacheName, "ZEC", new String(bytes, UTF_8), REST, start);
 
       // Reading as Shift_JIS
+      start = System.nanoTime();
       bytes = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "ZEC"))
                   .addHeader("Accept", "text/plain; charset=Shift_JIS"))
             .returnContent().asBytes();
-      logAction(READ, " `ZEC` as Shift_JIS", new String(bytes, shift_jis.displayName()), REST);
+      logAction(READ, cacheName, " `ZEC` as Shift_JIS", new String(bytes, shift_jis.displayName()), REST, start);
 
       // Read with Memcached
+      start = System.nanoTime();
       Object btc = memcachedClient.get("BTC");
-      logAction(READ, "BTC", btc, MEMCACHED);
+      logAction(READ, cacheName, "BTC", btc, MEMCACHED, start);
 
+      start = System.nanoTime();
       Object zec = memcachedClient.get("ZEC");
-      logAction(READ, "ZEC", zec, MEMCACHED);
+      logAction(READ, cacheName, "ZEC", zec, MEMCACHED, start);
 
       // Write with memcached
+      start = System.nanoTime();
       memcachedClient.set("ETH", -1, "Ethereum").get();
-      logAction(WRITE, "ETH", "Ethereum", MEMCACHED);
+      logAction(WRITE, cacheName, "ETH", "Ethereum", MEMCACHED, start);
 
       // Read with other endpoints:
-      logAction(READ, "ETH", cache.get("ETH"), HOT_ROD);
+      start = System.nanoTime();
+      String eth = cache.get("ETH");
+      logAction(READ, cacheName, "ETH", eth, HOT_ROD, start);
 
+      start = System.nanoTime();
       String res = requestExecutor
             .execute(Request.Get(String.format("http://%s:%d/rest/%s/%s", "localhost", 8080, cacheName, "ETH")))
             .returnContent().asString();
-      logAction(READ, "ETH", res, REST);
+      logAction(READ, cacheName, "ETH", res, REST, start);
+
+      printMetrics();
 
       remoteCacheManager.close();
       memcachedClient.shutdown();
@@ -1,12 +1,83 @@
 package org.infinispan.interop;
 
+import java.io.IOException;
+
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.client.hotrod.configuration.ClientIntelligence;
+import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
+import org.infinispan.client.hotrod.configuration.NearCacheMode;
+import org.infinispan.client.hotrod.marshall.ProtoStreamMarshaller;
+import org.infinispan.commons.marshall.Marshaller;
+import org.infinispan.protostream.FileDescriptorSource;
+import org.infinispan.protostream.SerializationContext;
+import org.infinispan.query.remote.client.ProtobufMetadataManagerConstants;
+
 final class Utils {
 
    enum Endpoint {HOT_ROD, REST, MEMCACHED}
 
    enum Action {READ, WRITE, QUERY}
 
-   static void logAction(Action action, Object input, Object content, Endpoint endpoint) {
+   /**
+    * The operations logged with a cache name and a start time, per endpoint, action and cache.
+    */
+   static final OperationMetrics METRICS = new OperationMetrics();
+
+   /**
+    * Console sink of {@link #logAction}: on for the demos unless '-Dinterop.quiet=true', and turned off by the drivers
+    * measuring operations with {@link #measuring()}.
+    */
+   private static volatile boolean console = !Boolean.getBoolean("interop.quiet");
+
+   /**
+    * Turns the console sink off, so that measured operations do not pay for synchronized console output, unless
+    * '-Dinterop.console=true' keeps it on.
+    */
+   static void measuring() {
+      console = Boolean.getBoolean("interop.console");
+   }
+
+   /**
+    * Records an operation started at <code>startNanos</code> in the {@link #METRICS}, the payload being the length of
+    * <code>content</code> when it is a <code>byte[]</code> or a string, and narrates it on the console sink.
+    */
+   static void logAction(Action action, String cacheName, Object input, Object content, Endpoint endpoint, long startNanos) {
+      METRICS.stats(endpoint, action, cacheName).record(System.nanoTime() - startNanos, payloadBytes(content), true);
+      if (console) {
+         print(action, input, content, endpoint);
+      }
+   }
+
+   /**
+    * Records a failed operation as an error in the {@link #METRICS}, and narrates it on the console sink.
+    */
+   static void logFailure(Action action, String cacheName, Object input, Endpoint endpoint, Throwable failure) {
+      METRICS.stats(endpoint, action, cacheName).record(0, 0, false);
+      if (console) {
+         System.out.println("Failed " + action + " '" + input + "' from " + endpoint + ": " + failure);
+      }
+   }
+
+   /**
+    * Prints the operations recorded in the {@link #METRICS} since the previous snapshot, one line per endpoint, action
+    * and cache.
+    */
+   static void printMetrics() {
+      METRICS.snapshot().forEach(System.out::println);
+   }
+
+   private static long payloadBytes(Object content) {
+      if (content instanceof byte[]) {
+         return ((byte[]) content).length;
+      }
+      return content instanceof CharSequence ? ((CharSequence) content).length() : 0;
+   }
+
+   private static void print(Action action, Object input, Object content, Endpoint endpoint) {
+      if (content instanceof byte[]) {
+         content = ((byte[]) content).length + " bytes";
+      }
       switch (action) {
          case WRITE:
             System.out.println("Wrote '" + input + "'='" + content + "' from " + endpoint);
@@ -19,4 +90,83 @@ final class Utils {
       }
    }
 
+   /**
+    * Opt-in near cache: when the 'interop.nearCache.maxEntries' system property is set, reads are served from a client
+    * side LRU cache of at most that many entries. Entries are invalidated by the server whenever they are written, from
+    * any endpoint.
+    */
+   static ConfigurationBuilder withNearCache(ConfigurationBuilder builder) {
+      int maxEntries = Integer.getInteger("interop.nearCache.maxEntries", 0);
+      if (maxEntries > 0) {
+         builder.nearCache().mode(NearCacheMode.INVALIDATED).maxEntries(maxEntries);
+      }
+      return builder;
+   }
+
+   /**
+    * Opt-in routing settings, for clusters of several servers:
+    * <ul>
+    * <li>'interop.hotrod.servers': the initial servers, e.g. "localhost:11222;localhost:11322", instead of
+    * localhost:11222,</li>
+    * <li>'interop.hotrod.intelligence': the {@link ClientIntelligence}, <code>HASH_DISTRIBUTION_AWARE</code> by default.
+    * <code>BASIC</code> clients send requests to the initial servers in turn, whichever node owns the key,</li>
+    * <li>'interop.hotrod.pool.maxActive', 'interop.hotrod.pool.minIdle' and 'interop.hotrod.pool.maxPendingRequests':
+    * the connections the client keeps to each server, unbounded by default with at least one idle, and the requests
+    * sent over a connection before another one is used, 5 by default.</li>
+    * </ul>
+    */
+   static ConfigurationBuilder withRouting(ConfigurationBuilder builder) {
+      String servers = System.getProperty("interop.hotrod.servers");
+      if (servers != null) {
+         builder.addServers(servers);
+      }
+      String intelligence = System.getProperty("interop.hotrod.intelligence");
+      if (intelligence != null) {
+         builder.clientIntelligence(ClientIntelligence.valueOf(intelligence));
+      }
+      Integer maxActive = Integer.getInteger("interop.hotrod.pool.maxActive");
+      if (maxActive != null) {
+         builder.connectionPool().maxActive(maxActive);
+      }
+      Integer minIdle = Integer.getInteger("interop.hotrod.pool.minIdle");
+      if (minIdle != null) {
+         builder.connectionPool().minIdle(minIdle);
+      }
+      Integer maxPendingRequests = Integer.getInteger("interop.hotrod.pool.maxPendingRequests");
+      if (maxPendingRequests != null) {
+         builder.connectionPool().maxPendingRequests(maxPendingRequests);
+      }
+      return builder;
+   }
+
+   /**
+    * Registers the 'crypto.proto' and 'crypto-search-only.proto' packaged with the entities and their
+    * {@link CryptoCurrencyMarshaller} and {@link SearchOnlyCryptoCurrencyMarshaller} in the client, and the schemas in the
+    * server unless the server already has the same ones. The client must be configured with the
+    * {@link ProtoStreamMarshaller}, possibly wrapped by a {@link CompressingMarshaller}.
+    */
+   static void registerSchema(RemoteCacheManager remoteCacheManager) throws IOException {
+      Marshaller marshaller = remoteCacheManager.getMarshaller();
+      if (marshaller instanceof CompressingMarshaller) {
+         marshaller = ((CompressingMarshaller) marshaller).getDelegate();
+      }
+      SerializationContext serializationContext = ((ProtoStreamMarshaller) marshaller).getSerializationContext();
+      String schemaFile = CryptoSchema.load();
+      String searchOnlySchemaFile = CryptoSchema.loadSearchOnly();
+
+      serializationContext.registerProtoFiles(FileDescriptorSource.fromString(CryptoSchema.FILE_NAME, schemaFile)
+            .addProtoFile(CryptoSchema.SEARCH_ONLY_FILE_NAME, searchOnlySchemaFile));
+      serializationContext.registerMarshaller(new CryptoCurrencyMarshaller());
+      serializationContext.registerMarshaller(new SearchOnlyCryptoCurrencyMarshaller());
+
+      // Writing a schema makes the server parse it and revalidate the indexed caches, so it is only written when changed
+      RemoteCache<String, String> metadataCache = remoteCacheManager.getCache(ProtobufMetadataManagerConstants.PROTOBUF_METADATA_CACHE_NAME);
+      if (!schemaFile.equals(metadataCache.get(CryptoSchema.FILE_NAME))) {
+         metadataCache.put(CryptoSchema.FILE_NAME, schemaFile);
+      }
+      if (!searchOnlySchemaFile.equals(metadataCache.get(CryptoSchema.SEARCH_ONLY_FILE_NAME))) {
+         metadataCache.put(CryptoSchema.SEARCH_ONLY_FILE_NAME, searchOnlySchemaFile);
+      }
+   }
+
 }
@@ -0,0 +1,324 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpHeaders.ETAG;
+import static org.apache.http.HttpHeaders.IF_MATCH;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+import org.infinispan.client.hotrod.MetadataValue;
+import org.infinispan.client.hotrod.RemoteCache;
+
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
+import net.spy.memcached.MemcachedClient;
+
+/**
+ * Conditional writes of the entries of a cache, the same way from Hot Rod, REST and memcached: a value is read with its
+ * version, and a write given that version only succeeds if the entry has not been written since.
+ * <p>
+ * Each endpoint has its own kind of version. Hot Rod reads it with <code>getWithMetadata</code> and writes with
+ * <code>replaceWithVersion</code> and <code>removeWithVersion</code>, memcached with <code>gets</code>,
+ * <code>cas</code> and <code>delete</code> given the CAS unique, and REST returns an <code>ETag</code> with each read,
+ * which is sent back as <code>If-Match</code>. The ETag is derived from the value, not from a write counter, which is
+ * enough as long as a new value is never equal to one the entry had before. Versions are not interchangeable between
+ * endpoints, but each endpoint sees the writes of the others as a change of version.
+ * <p>
+ * {@link #update(String, UnaryOperator, Backoff)} reads, applies a function and writes until no other write got in
+ * between, and {@link CacheLock} serializes updates with a lock entry instead. REST and memcached values are JSON
+ * documents, converted with the given functions.
+ */
+public abstract class VersionedCache<V> {
+
+   /**
+    * A value and the version it was read with.
+    */
+   public static final class Versioned<V> {
+      private final V value;
+      private final Object version;
+
+      Versioned(V value, Object version) {
+         this.value = value;
+         this.version = version;
+      }
+
+      public V getValue() {
+         return value;
+      }
+
+      /**
+       * The Hot Rod version or memcached CAS unique as a Long, or the REST ETag as a String.
+       */
+      public Object getVersion() {
+         return version;
+      }
+
+      @Override
+      public String toString() {
+         return value + " @ " + version;
+      }
+   }
+
+   /**
+    * How long to wait after a conflicting write before reading the entry again: a random time up to
+    * <code>initial</code> after the first conflict, doubled after each following one up to <code>max</code>, so that
+    * writers competing for the same key do not keep retrying in lockstep.
+    */
+   public static final class Backoff {
+      public static final Backoff NONE = new Backoff(0, 0, TimeUnit.NANOSECONDS);
+
+      private final long initialNanos;
+      private final long maxNanos;
+
+      public Backoff(long initial, long max, TimeUnit unit) {
+         this.initialNanos = unit.toNanos(initial);
+         this.maxNanos = unit.toNanos(max);
+      }
+
+      /**
+       * Waits after the given number of conflicts, 1 after the first one.
+       */
+      void pause(int conflicts) {
+         if (initialNanos > 0) {
+            long bound = conflicts >= 32 ? maxNanos : Math.min(initialNanos << (conflicts - 1), maxNanos);
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(bound + 1));
+         }
+      }
+   }
+
+   /**
+    * The value of the key with its version, or null when the key is not in the cache.
+    */
+   public abstract Versioned<V> get(String key) throws IOException;
+
+   /**
+    * Writes the value whatever the entry holds, so that of two writers reading the same value and writing its update,
+    * the last one wins and the update of the other is lost.
+    */
+   public abstract void put(String key, V value) throws IOException;
+
+   /**
+    * Writes the value if the key is not in the cache yet, expiring as given.
+    *
+    * @return whether the value was written
+    */
+   public abstract boolean putIfAbsent(String key, V value, Expiration expiration) throws IOException;
+
+   /**
+    * Writes the value if the entry still has the version it was read with, with the expiration of the cache.
+    *
+    * @return whether the value was written
+    */
+   public abstract boolean replace(String key, V value, Versioned<V> current) throws IOException;
+
+   /**
+    * Removes the entry if it still has the version it was read with.
+    *
+    * @return whether the entry was removed
+    */
+   public abstract boolean remove(String key, Versioned<V> current) throws IOException;
+
+   /**
+    * Replaces the value of the key, or writes the result of applying the function to null when it is not in the cache,
+    * reading the entry again and applying the function to the new value after each conflicting write.
+    *
+    * @return the number of attempts, 1 when no other write got in between
+    */
+   public int update(String key, UnaryOperator<V> function, Backoff backoff) throws IOException {
+      for (int attempts = 1; ; attempts++) {
+         Versioned<V> current = get(key);
+         V value = function.apply(current == null ? null : current.getValue());
+         if (current == null ? putIfAbsent(key, value, Expiration.CACHE_DEFAULT) : replace(key, value, current)) {
+            return attempts;
+         }
+         backoff.pause(attempts);
+      }
+   }
+
+   public static <V> VersionedCache<V> hotRod(RemoteCache<String, V> remoteCache) {
+      return new HotRod<>(remoteCache);
+   }
+
+   /**
+    * Reads and writes the entries of the cache at <code>cacheUrl</code>, ending with a slash, as JSON.
+    */
+   public static <V> VersionedCache<V> rest(Executor requestExecutor, String cacheUrl, Function<? super V, String> toJson,
+                                            Function<String, ? extends V> fromJson) {
+      return new Rest<>(requestExecutor, cacheUrl, toJson, fromJson);
+   }
+
+   /**
+    * Reads and writes the entries through a connector with <code>client-encoding="application/json"</code>.
+    */
+   public static <V> VersionedCache<V> memcached(MemcachedClient memcachedClient, Function<? super V, String> toJson,
+                                                 Function<String, ? extends V> fromJson) {
+      return new Memcached<>(memcachedClient, new JsonTranscoder<V>(value -> toJson.apply(value).getBytes(UTF_8),
+            bytes -> fromJson.apply(new String(bytes, UTF_8))));
+   }
+
+   private static final class HotRod<V> extends VersionedCache<V> {
+      private final RemoteCache<String, V> remoteCache;
+
+      HotRod(RemoteCache<String, V> remoteCache) {
+         this.remoteCache = remoteCache;
+      }
+
+      @Override
+      public Versioned<V> get(String key) {
+         MetadataValue<V> metadataValue = remoteCache.getWithMetadata(key);
+         return metadataValue == null ? null : new Versioned<>(metadataValue.getValue(), metadataValue.getVersion());
+      }
+
+      @Override
+      public void put(String key, V value) {
+         remoteCache.put(key, value);
+      }
+
+      @Override
+      public boolean putIfAbsent(String key, V value, Expiration expiration) {
+         return expiration.putIfAbsent(remoteCache, key, value) == null;
+      }
+
+      @Override
+      public boolean replace(String key, V value, Versioned<V> current) {
+         return remoteCache.replaceWithVersion(key, value, (Long) current.getVersion());
+      }
+
+      @Override
+      public boolean remove(String key, Versioned<V> current) {
+         return remoteCache.removeWithVersion(key, (Long) current.getVersion());
+      }
+   }
+
+   private static final class Rest<V> extends VersionedCache<V> {
+      private final Executor requestExecutor;
+      private final String cacheUrl;
+      private final Function<? super V, String> toJson;
+      private final Function<String, ? extends V> fromJson;
+
+      Rest(Executor requestExecutor, String cacheUrl, Function<? super V, String> toJson, Function<String, ? extends V> fromJson) {
+         this.requestExecutor = requestExecutor;
+         this.cacheUrl = cacheUrl;
+         this.toJson = toJson;
+         this.fromJson = fromJson;
+      }
+
+      @Override
+      public Versioned<V> get(String key) throws IOException {
+         HttpResponse response = requestExecutor.execute(Request.Get(cacheUrl + key)
+               .addHeader(ACCEPT, ContentType.APPLICATION_JSON.getMimeType())).returnResponse();
+         int status = response.getStatusLine().getStatusCode();
+         if (status == HttpStatus.SC_NOT_FOUND) {
+            return null;
+         }
+         String json = EntityUtils.toString(response.getEntity(), UTF_8);
+         Header etag = response.getFirstHeader(ETAG);
+         if (status != HttpStatus.SC_OK || etag == null) {
+            throw new IOException("GET " + cacheUrl + key + ": " + response.getStatusLine() + (etag == null ? ", no ETag" : ""));
+         }
+         return new Versioned<>(fromJson.apply(json), etag.getValue());
+      }
+
+      @Override
+      public void put(String key, V value) throws IOException {
+         write(Request.Put(cacheUrl + key), value, -1);
+      }
+
+      @Override
+      public boolean putIfAbsent(String key, V value, Expiration expiration) throws IOException {
+         // POST does not overwrite an existing entry, and answers 409 Conflict instead
+         return write(expiration.headers(Request.Post(cacheUrl + key)), value, HttpStatus.SC_CONFLICT);
+      }
+
+      @Override
+      public boolean replace(String key, V value, Versioned<V> current) throws IOException {
+         return write(Request.Put(cacheUrl + key).addHeader(IF_MATCH, (String) current.getVersion()), value, HttpStatus.SC_PRECONDITION_FAILED);
+      }
+
+      @Override
+      public boolean remove(String key, Versioned<V> current) throws IOException {
+         return status(Request.Delete(cacheUrl + key).addHeader(IF_MATCH, (String) current.getVersion()), HttpStatus.SC_PRECONDITION_FAILED);
+      }
+
+      private boolean write(Request request, V value, int conflict) throws IOException {
+         return status(request.bodyString(toJson.apply(value), ContentType.APPLICATION_JSON), conflict);
+      }
+
+      /**
+       * Whether the request succeeded, false when it got the <code>conflict</code> status or 404 Not Found.
+       */
+      private boolean status(Request request, int conflict) throws IOException {
+         HttpResponse response = requestExecutor.execute(request).returnResponse();
+         int status = response.getStatusLine().getStatusCode();
+         if (status == conflict || status == HttpStatus.SC_NOT_FOUND) {
+            return false;
+         }
+         if (status >= 300) {
+            throw new IOException(request + ": " + response.getStatusLine());
+         }
+         return true;
+      }
+   }
+
+   private static final class Memcached<V> extends VersionedCache<V> {
+      private final MemcachedClient memcachedClient;
+      private final JsonTranscoder<V> transcoder;
+
+      Memcached(MemcachedClient memcachedClient, JsonTranscoder<V> transcoder) {
+         this.memcachedClient = memcachedClient;
+         this.transcoder = transcoder;
+      }
+
+      @Override
+      public Versioned<V> get(String key) {
+         CASValue<V> casValue = memcachedClient.gets(key, transcoder);
+         return casValue == null ? null : new Versioned<>(casValue.getValue(), casValue.getCas());
+      }
+
+      @Override
+      public void put(String key, V value) throws IOException {
+         complete(memcachedClient.set(key, 0, value, transcoder));
+      }
+
+      @Override
+      public boolean putIfAbsent(String key, V value, Expiration expiration) throws IOException {
+         return complete(memcachedClient.add(key, expiration.memcachedExpiration(), value, transcoder));
+      }
+
+      @Override
+      public boolean replace(String key, V value, Versioned<V> current) {
+         return memcachedClient.cas(key, (Long) current.getVersion(), 0, value, transcoder) == CASResponse.OK;
+      }
+
+      @Override
+      public boolean remove(String key, Versioned<V> current) throws IOException {
+         return complete(memcachedClient.delete(key, (long) (Long) current.getVersion()));
+      }
+
+      private static boolean complete(Future<Boolean> future) throws IOException {
+         try {
+            return future.get();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+         } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+         }
+      }
+   }
+}
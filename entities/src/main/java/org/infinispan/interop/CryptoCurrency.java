@@ -1,27 +1,47 @@
 package org.infinispan.interop;
 
-import java.io.Serializable;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 import org.infinispan.protostream.annotations.ProtoDoc;
 import org.infinispan.protostream.annotations.ProtoField;
 import org.infinispan.protostream.annotations.ProtoMessage;
 
+/**
+ * A crypto currency, stored as protobuf in the 'indexed' cache and as a Java object in the 'pojo-cache' and
+ * 'marshalled-pojo-cache'.
+ * <p>
+ * Java serialization of the object caches, by JBoss Marshalling in the clients and the server, goes through
+ * {@link #writeExternal(ObjectOutput)} and {@link #readExternal(ObjectInput)} instead of reflection over the fields: a
+ * read only resolves this class, instantiates it with the public constructor and reads the two fields in order. The
+ * server only needs this class in its deserialization white list.
+ */
 @ProtoMessage(name = "CryptoCurrency")
 @ProtoDoc("@Indexed")
-public class CryptoCurrency implements Serializable {
+public class CryptoCurrency implements Externalizable {
+
+   private static final long serialVersionUID = 1L;
+
+   // Descriptions are read by the server from any client, so their length is bounded before allocating them
+   static final int MAX_DESCRIPTION_BYTES = 65_535;
 
    @ProtoField(number = 1)
    @ProtoDoc("@Field(store = Store.YES, analyze = Analyze.YES, analyzer = @Analyzer(definition = \"standard\"))")
    public String description;
 
-   @ProtoField(number = 2)
+   @ProtoField(number = 2, defaultValue = "0")
    @ProtoDoc("@Field(index = Index.YES, store = Store.NO)")
-   public Integer rank;
+   public int rank;
 
    public CryptoCurrency() {
    }
 
-   public CryptoCurrency(String description, Integer rank) {
+   public CryptoCurrency(String description, int rank) {
       this.description = description;
       this.rank = rank;
    }
@@ -30,10 +50,40 @@ public class CryptoCurrency implements Serializable {
       return description;
    }
 
-   public Integer getRank() {
+   public int getRank() {
       return rank;
    }
 
+   @Override
+   public void writeExternal(ObjectOutput out) throws IOException {
+      // Length-prefixed UTF-8 rather than writeUTF, which counts modified UTF-8 bytes
+      if (description == null) {
+         out.writeInt(-1);
+      } else {
+         byte[] bytes = description.getBytes(UTF_8);
+         if (bytes.length > MAX_DESCRIPTION_BYTES) {
+            throw new IOException("Description of " + bytes.length + " bytes, over " + MAX_DESCRIPTION_BYTES);
+         }
+         out.writeInt(bytes.length);
+         out.write(bytes);
+      }
+      out.writeInt(rank);
+   }
+
+   @Override
+   public void readExternal(ObjectInput in) throws IOException {
+      int length = in.readInt();
+      if (length < -1 || length > MAX_DESCRIPTION_BYTES) {
+         throw new InvalidObjectException("Invalid description length " + length);
+      }
+      if (length >= 0) {
+         byte[] bytes = new byte[length];
+         in.readFully(bytes);
+         description = new String(bytes, UTF_8);
+      }
+      rank = in.readInt();
+   }
+
    @Override
    public String toString() {
       return "CryptoCurrency{" +
@@ -50,13 +100,13 @@ public class CryptoCurrency implements Serializable {
       CryptoCurrency that = (CryptoCurrency) o;
 
       if (!description.equals(that.description)) return false;
-      return rank.equals(that.rank);
+      return rank == that.rank;
    }
 
    @Override
    public int hashCode() {
       int result = description.hashCode();
-      result = 31 * result + rank.hashCode();
+      result = 31 * result + rank;
       return result;
    }
 }
@@ -0,0 +1,89 @@
+package org.infinispan.interop;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.infinispan.protostream.ImmutableSerializationContext;
+import org.infinispan.protostream.RawProtoStreamReader;
+import org.infinispan.protostream.RawProtoStreamWriter;
+import org.infinispan.protostream.RawProtobufMarshaller;
+import org.infinispan.protostream.impl.RawProtoStreamWriterImpl;
+
+/**
+ * Hand-written marshaller for the 'CryptoCurrency' message of 'crypto.proto'.
+ * <p>
+ * Unlike the marshaller generated by the <code>ProtoSchemaBuilder</code>, it writes the field tags straight to the
+ * output without the per-message field tracking and reads <code>rank</code> into a primitive <code>int</code>. The
+ * bytes produced are identical, so it can replace the generated marshaller without any change to the schema.
+ */
+public final class CryptoCurrencyMarshaller implements RawProtobufMarshaller<CryptoCurrency> {
+
+   static final int DESCRIPTION_TAG = 1 << 3 | 2;  // field 1, length delimited
+   static final int RANK_TAG = 2 << 3;             // field 2, varint
+
+   @Override
+   public Class<CryptoCurrency> getJavaClass() {
+      return CryptoCurrency.class;
+   }
+
+   @Override
+   public String getTypeName() {
+      return "CryptoCurrency";
+   }
+
+   @Override
+   public CryptoCurrency readFrom(ImmutableSerializationContext ctx, RawProtoStreamReader in) throws IOException {
+      return read(in, new CryptoCurrency());
+   }
+
+   @Override
+   public void writeTo(ImmutableSerializationContext ctx, RawProtoStreamWriter out, CryptoCurrency cryptoCurrency) throws IOException {
+      write(out, cryptoCurrency);
+   }
+
+   /**
+    * Writes the message, without the {@link org.infinispan.protostream.WrappedMessage} envelope, at the position of a
+    * reused buffer and advances the position past the written bytes.
+    * <p>
+    * The Hot Rod client does not go through this method: its <code>ProtoStreamMarshaller</code> wraps each value and
+    * returns a new array, which the client holds until the request is written.
+    */
+   public void writeTo(ByteBuffer buffer, CryptoCurrency cryptoCurrency) throws IOException {
+      RawProtoStreamWriter out = RawProtoStreamWriterImpl.newInstance(buffer);
+      writeTo(null, out, cryptoCurrency);
+      out.flush();
+   }
+
+   /**
+    * Reads the fields of a message with the same fields as 'CryptoCurrency' into <code>cryptoCurrency</code>.
+    */
+   static <T extends CryptoCurrency> T read(RawProtoStreamReader in, T cryptoCurrency) throws IOException {
+      boolean done = false;
+      while (!done) {
+         int tag = in.readTag();
+         switch (tag) {
+            case 0:
+               done = true;
+               break;
+            case DESCRIPTION_TAG:
+               cryptoCurrency.description = in.readString();
+               break;
+            case RANK_TAG:
+               cryptoCurrency.rank = in.readInt32();
+               break;
+            default:
+               if (!in.skipField(tag)) {
+                  done = true;
+               }
+         }
+      }
+      return cryptoCurrency;
+   }
+
+   static void write(RawProtoStreamWriter out, CryptoCurrency cryptoCurrency) throws IOException {
+      if (cryptoCurrency.description != null) {
+         out.writeString(1, cryptoCurrency.description);
+      }
+      out.writeInt32(2, cryptoCurrency.rank);
+   }
+}
@@ -0,0 +1,87 @@
+package org.infinispan.interop;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.infinispan.protostream.ProtobufUtil;
+import org.infinispan.protostream.SerializationContext;
+import org.infinispan.protostream.annotations.ProtoSchemaBuilder;
+import org.infinispan.protostream.config.Configuration;
+
+/**
+ * The 'crypto.proto' schema of the annotated {@link CryptoCurrency}.
+ * <p>
+ * The schema is generated when the module is built, by running {@link #main(String[])} on the compiled classes, and
+ * packaged next to this class, so clients read it as a resource instead of running the <code>ProtoSchemaBuilder</code>,
+ * which generates and compiles a marshaller class, on every start. Together with the {@link CryptoCurrencyMarshaller}
+ * nothing is generated at runtime.
+ * <p>
+ * The 'crypto-search-only.proto' schema of the {@link SearchOnlyCryptoCurrency} is written by hand, as it has the
+ * fields of {@link CryptoCurrency} with another mapping of the description.
+ */
+public final class CryptoSchema {
+
+   public static final String FILE_NAME = "crypto.proto";
+   public static final String SEARCH_ONLY_FILE_NAME = "crypto-search-only.proto";
+
+   private CryptoSchema() {
+   }
+
+   /**
+    * The schema packaged with the module, or generated from the annotations when running from classes that were not
+    * built by Maven.
+    */
+   public static String load() throws IOException {
+      String schema = read(FILE_NAME);
+      return schema == null ? generate() : schema;
+   }
+
+   /**
+    * The schema of the {@link SearchOnlyCryptoCurrency}.
+    */
+   public static String loadSearchOnly() throws IOException {
+      String schema = read(SEARCH_ONLY_FILE_NAME);
+      if (schema == null) {
+         throw new IOException(SEARCH_ONLY_FILE_NAME + " not found next to " + CryptoSchema.class.getName());
+      }
+      return schema;
+   }
+
+   private static String read(String fileName) throws IOException {
+      try (InputStream in = CryptoSchema.class.getResourceAsStream(fileName)) {
+         if (in == null) {
+            return null;
+         }
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte[] buffer = new byte[4096];
+         int read;
+         while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+         }
+         return new String(out.toByteArray(), UTF_8);
+      }
+   }
+
+   /**
+    * Generates the schema from the annotations of {@link CryptoCurrency}.
+    */
+   static String generate() throws IOException {
+      SerializationContext serializationContext = ProtobufUtil.newSerializationContext(Configuration.builder().build());
+      return new ProtoSchemaBuilder().fileName(FILE_NAME).addClass(CryptoCurrency.class).build(serializationContext);
+   }
+
+   /**
+    * Writes the schema under the package directory of this class in the given output directory.
+    */
+   public static void main(String[] args) throws IOException {
+      Path directory = Paths.get(args[0], CryptoSchema.class.getPackage().getName().split("\\."));
+      Files.createDirectories(directory);
+      Files.write(directory.resolve(FILE_NAME), generate().getBytes(UTF_8));
+   }
+}
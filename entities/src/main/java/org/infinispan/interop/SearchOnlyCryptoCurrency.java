@@ -0,0 +1,18 @@
+package org.infinispan.interop;
+
+/**
+ * A {@link CryptoCurrency} stored as the 'SearchOnlyCryptoCurrency' message of 'crypto-search-only.proto', in the
+ * indexing variants of the 'indexed' cache: the description is searched but, unlike the one of 'CryptoCurrency', not
+ * stored in the index, so it cannot be projected.
+ */
+public class SearchOnlyCryptoCurrency extends CryptoCurrency {
+
+   private static final long serialVersionUID = 1L;
+
+   public SearchOnlyCryptoCurrency() {
+   }
+
+   public SearchOnlyCryptoCurrency(String description, int rank) {
+      super(description, rank);
+   }
+}
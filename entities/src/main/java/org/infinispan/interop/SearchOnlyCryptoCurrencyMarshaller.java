@@ -0,0 +1,35 @@
+package org.infinispan.interop;
+
+import java.io.IOException;
+
+import org.infinispan.protostream.ImmutableSerializationContext;
+import org.infinispan.protostream.RawProtoStreamReader;
+import org.infinispan.protostream.RawProtoStreamWriter;
+import org.infinispan.protostream.RawProtobufMarshaller;
+
+/**
+ * Hand-written marshaller for the 'SearchOnlyCryptoCurrency' message of 'crypto-search-only.proto', writing the same
+ * bytes as the {@link CryptoCurrencyMarshaller}.
+ */
+public final class SearchOnlyCryptoCurrencyMarshaller implements RawProtobufMarshaller<SearchOnlyCryptoCurrency> {
+
+   @Override
+   public Class<SearchOnlyCryptoCurrency> getJavaClass() {
+      return SearchOnlyCryptoCurrency.class;
+   }
+
+   @Override
+   public String getTypeName() {
+      return "SearchOnlyCryptoCurrency";
+   }
+
+   @Override
+   public SearchOnlyCryptoCurrency readFrom(ImmutableSerializationContext ctx, RawProtoStreamReader in) throws IOException {
+      return CryptoCurrencyMarshaller.read(in, new SearchOnlyCryptoCurrency());
+   }
+
+   @Override
+   public void writeTo(ImmutableSerializationContext ctx, RawProtoStreamWriter out, SearchOnlyCryptoCurrency cryptoCurrency) throws IOException {
+      CryptoCurrencyMarshaller.write(out, cryptoCurrency);
+   }
+}
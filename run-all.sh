@@ -1,5 +1,15 @@
 set -e -o pipefail -o errtrace -o functrace
 
+# Runs the demos against an in-process cluster of NODES nodes (3 by default), or against the Docker image with --docker
+NODES=3
+DOCKER=false
+for arg in "$@"; do
+  case $arg in
+    --docker) DOCKER=true ;;
+    *) NODES=$arg ;;
+  esac
+done
+
 function wait_for_ispn() {
   until `docker exec -t infinispan /opt/jboss/infinispan-server/bin/ispn-cli.sh -c ":read-attribute(name=server-state)"  | grep -q running`; do
     sleep 3
@@ -7,19 +17,56 @@ function wait_for_ispn() {
   done
 }
 
+function start_docker() {
+  docker run -v $PWD/entities/target:/opt/jboss/infinispan-server/standalone/deployments \
+             -v $PWD/client/config:/opt/jboss/infinispan-server/standalone/configuration/demo \
+             -p 8080:8080 -p 11211-11222:11211-11222 \
+             -e "APP_USER=dev" -e "APP_PASS=dev" -e "JAVA_OPTS=-Dinfinispan.deserialization.whitelist.classes=org.infinispan.interop.CryptoCurrency" \
+             --name infinispan -d jboss/infinispan-server:9.4.1.Final demo/clustered.xml
+  trap "docker rm -f infinispan" EXIT
+
+  wait_for_ispn
+}
+
+function start_cluster() {
+  mvn -pl benchmarks exec:java -Dexec.mainClass=org.infinispan.interop.InteropCluster -Dexec.args="$NODES" > cluster.log 2>&1 &
+  CLUSTER_PID=$!
+  trap "kill $CLUSTER_PID" EXIT
+
+  until grep -q "Interop cluster started" cluster.log; do
+    if ! kill -0 $CLUSTER_PID 2>/dev/null; then
+      echo "The cluster stopped before starting:"
+      cat cluster.log
+      exit 1
+    fi
+    sleep 3
+    echo "Waiting for the cluster to start..."
+  done
+}
+
+function stop_cluster() {
+  kill $CLUSTER_PID
+  wait $CLUSTER_PID || true
+  trap - EXIT
+}
+
 mvn clean install
-docker run -v $PWD/entities/target:/opt/jboss/infinispan-server/standalone/deployments \
-           -v $PWD/client/config:/opt/jboss/infinispan-server/standalone/configuration/demo \
-           -p 8080:8080 -p 11211-11222:11211-11222 \
-           -e "APP_USER=dev" -e "APP_PASS=dev" -e "JAVA_OPTS=-Dinfinispan.deserialization.whitelist.regexps=.\*" \
-           --name infinispan -d jboss/infinispan-server:9.4.1.Final demo/clustered.xml
 
-wait_for_ispn
+if $DOCKER; then
+  start_docker
+else
+  start_cluster
+fi
 
 mvn -pl client exec:java -Dexec.mainClass=org.infinispan.interop.JsonInterop -Dexec.cleanupDaemonThreads=false
 mvn -pl client exec:java -Dexec.mainClass=org.infinispan.interop.MarshalledStorageInterop -Dexec.cleanupDaemonThreads=false
 mvn -pl client exec:java -Dexec.mainClass=org.infinispan.interop.ObjectStorageInterop -Dexec.cleanupDaemonThreads=false
 mvn -pl client exec:java -Dexec.mainClass=org.infinispan.interop.ProtobufInterop -Dexec.cleanupDaemonThreads=false
 mvn -pl client exec:java -Dexec.mainClass=org.infinispan.interop.StringInterop -Dexec.cleanupDaemonThreads=false
+mvn -pl client exec:java -Dexec.mainClass=org.infinispan.interop.NearCacheInterop -Dexec.cleanupDaemonThreads=false
 
-docker rm -f infinispan
\ No newline at end of file
+if ! $DOCKER; then
+  # The scenarios through every node, routing and rebalance latency, on a cluster of its own
+  stop_cluster
+  mvn -pl benchmarks exec:java -Dexec.mainClass=org.infinispan.interop.ClusterInterop -Dexec.args="$NODES"
+fi